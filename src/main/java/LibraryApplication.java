@@ -1,20 +1,47 @@
+import archive.ArchiveFile;
+import archive.ArchiveRecord;
+import archive.LibraryArchiver;
 import model.Book;
+import model.BookFilter;
+import model.BookPage;
+import model.Borrower;
+import model.Hold;
+import model.Isbn;
 import model.Library;
+import util.BatchRunner;
 import util.FileUtils;
+import util.SnapshotLoader;
 import exception.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.InputMismatchException;
+import java.time.Instant;
 
 public class LibraryApplication {
     private static final String DATA_FILE = "library.json";
+    private static final String BORROWERS_FILE = "borrowers.json";
+    private static final String ARCHIVE_FILE = "archive.dat";
+    private static final int PAGE_SIZE = 20;
     private static Library library;
+    private static LibraryArchiver archiver;
     private static Scanner scanner;
 
+    // Interactive menu by default; "--batch <file>" or "--batch -" (stdin) runs commands
+    // from a script instead (see util.BatchRunner), "--no-save" leaves the data files untouched
     public static void main(String [] args){
+        if(args.length > 0 && args[0].equals("--batch")){
+            System.exit(runBatch(args));
+        }
         initialize();
         showMainMenu();
     }
@@ -22,15 +49,87 @@ public class LibraryApplication {
     // Initialize library and load data if available
     private static void initialize() {
         scanner = new Scanner(System.in);
+        if(!loadLibrary(System.out)){
+            System.exit(1);
+        }
+        openArchive(System.out);
+    }
 
-        // Try to load existing library data
+    // Returns false if a data file exists but cannot be read. Carrying on with an empty
+    // library would overwrite that file on save, so callers stop instead.
+    private static boolean loadLibrary(PrintStream log) {
+        if(!new File(DATA_FILE).exists()){
+            log.println("Creating new library...");
+            library = new Library();
+        }else{
+            try{
+                SnapshotLoader.Result loaded = new SnapshotLoader().load(DATA_FILE);
+                library = loaded.getLibrary();
+                log.println("Library data loaded successfully: " + loaded);
+            }catch(IOException | RuntimeException e){
+                log.println("Error loading " + DATA_FILE + ": " + e.getMessage());
+                log.println("Fix or move the file and start again; it has not been changed.");
+                return false;
+            }
+        }
+
+        // Borrower ids and tiers are kept in their own file
+        if(new File(BORROWERS_FILE).exists()){
+            try{
+                library.setBorrowerRegistry(FileUtils.loadBorrowersFromFile(BORROWERS_FILE));
+            }catch(IOException | RuntimeException e){
+                log.println("Error loading " + BORROWERS_FILE + ": " + e.getMessage());
+                log.println("Fix or move the file and start again; it has not been changed.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returned loans and removed books are moved to the archive file as they happen
+    private static void openArchive(PrintStream log) {
         try{
-            library = FileUtils.loadLibraryFromFile(DATA_FILE);
-            System.out.println("Library data loaded successfully.");
+            archiver = LibraryArchiver.attach(library, ArchiveFile.open(Paths.get(ARCHIVE_FILE)));
         }catch(IOException e){
-            // If no data file exists or there's an error, create a new library
-            System.out.println("Creating new library...");
-            library = new Library();
+            log.println("Error opening archive, history will not be recorded: " + e.getMessage());
+        }
+    }
+
+    private static void closeArchive() throws IOException {
+        if(archiver != null){
+            archiver.close();
+            archiver = null;
+        }
+    }
+
+    // Batch mode: results go to stdout, everything else to stderr so the output can be piped
+    private static int runBatch(String[] args){
+        if(args.length < 2){
+            System.err.println("Usage: LibraryApplication --batch <file | -> [--no-save]");
+            return 2;
+        }
+        boolean save = !(args.length > 2 && args[2].equals("--no-save"));
+        if(!loadLibrary(System.err)){
+            return 2;
+        }
+        if(save){
+            openArchive(System.err);
+        }
+
+        try(ReadableByteChannel in = args[1].equals("-")
+                ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(args[1]), StandardOpenOption.READ)){
+            BatchRunner.Summary summary = new BatchRunner(library).run(in, Channels.newChannel(System.out));
+            System.err.println(summary);
+            if(save){
+                FileUtils.saveLibraryToFile(library, DATA_FILE);
+                FileUtils.saveBorrowersToFile(library.borrowers(), BORROWERS_FILE);
+                closeArchive();
+            }
+            return summary.getFailed() == 0 ? 0 : 1;
+        }catch(IOException e){
+            System.err.println("Error: " + e.getMessage());
+            return 2;
         }
     }
 
@@ -51,6 +150,7 @@ public class LibraryApplication {
             System.out.println("8. View All Books");
             System.out.println("9. View All Borrowed Books");
             System.out.println("10. Import/Export data");
+            System.out.println("11. View Loan History");
             System.out.println("0. Save and exit");
 
             System.out.print("\nEnter your choice: ");
@@ -87,6 +187,9 @@ public class LibraryApplication {
                 case 10:
                     importExportMenu();
                     break;
+                case 11:
+                    viewLoanHistory();
+                    break;
                 case 0:
                     saveAndExit();
                     exit = true;
@@ -149,6 +252,10 @@ public class LibraryApplication {
         String author = getStringInput("Enter author: ");
         String genre = getStringInput("Enter genre: ");
         String isbn = getStringInput("Enter ISBN: ");
+        if(!Isbn.isValid(isbn)){
+            System.out.println("Error: " + isbn + " is not a valid ISBN-10 or ISBN-13.");
+            return;
+        }
 
         System.out.print("Enter year published: ");
         int year = getIntInput();
@@ -226,6 +333,27 @@ public class LibraryApplication {
         try{
             library.borrowBook(title, borrowerName);
             System.out.println("Book borrowed successfully.");
+        }catch(BookNotAvailableException e){
+            // queue instead of retrying; the book is lent automatically when it comes back
+            String answer = getStringInput("Book is out. Place a hold? (y/n): ");
+            if(answer.equalsIgnoreCase("y")){
+                placeHold(title, borrowerName);
+            }
+        }catch(BookNotFoundException | BorrowLimitExceededException e){
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void placeHold(String title, String borrowerName){
+        try{
+            Hold hold = library.placeHold(title, borrowerName);
+            if(hold.isWaiting()){
+                System.out.println("Hold placed. Position in queue: " + library.holdsFor(title).size());
+                hold.whenReady().thenAccept(book ->
+                    System.out.println("\n" + borrowerName + " now has \"" + book.getTitle() + "\" (hold filled)."));
+            }else{
+                System.out.println("Book was returned in the meantime and is now borrowed.");
+            }
         }catch(BookNotFoundException | BookNotAvailableException | BorrowLimitExceededException e){
             System.out.println("Error: " + e.getMessage());
         }
@@ -248,16 +376,13 @@ public class LibraryApplication {
     // 6. View all available books
     private static void viewAvailableBooks(){
         System.out.println("\n=== Available Books ===");
-        List<Book> availableBooks = library.getAllAvailableBooks();
+        int shown = showPaged(BookFilter.all().available());
 
         // check if there are any books available
-        if(availableBooks.isEmpty()){
+        if(shown == 0){
             System.out.println("No available books in the library.");
         }else{
-            for(Book book: availableBooks){
-                displayBook(book);
-            }
-            System.out.println("Total available books: " + availableBooks.size());
+            System.out.println("Available books shown: " + shown);
         }
     }
 
@@ -271,7 +396,9 @@ public class LibraryApplication {
             System.out.println("No borrowers in the library.");
         }else{
             for(Map.Entry<String, List<Book>> entry: report.entrySet()){
-               System.out.println("Borrower: " + entry.getKey());
+               Borrower borrower = library.borrowers().find(entry.getKey());
+               System.out.println("Borrower: " + entry.getKey()
+                   + (borrower == null ? "" : " (#" + borrower.getId() + ", " + borrower.getTier() + ")"));
                System.out.println("Books borrowed: ");
 
                List<Book> books = entry.getValue();
@@ -283,17 +410,42 @@ public class LibraryApplication {
         }
     }
 
+    // 11. View archived loans of one book
+    private static void viewLoanHistory(){
+        System.out.println("\n=== Loan History ===");
+        if(archiver == null){
+            System.out.println("The archive is not available.");
+            return;
+        }
+        System.out.print("Enter ISBN: ");
+        String isbn = scanner.nextLine();
+        System.out.print("Enter year: ");
+        int year = getIntInput();
+        try{
+            List<ArchiveRecord> loans = archiver.getArchive().loansOf(isbn, year);
+            if(loans.isEmpty()){
+                System.out.println("No loans of " + isbn + " in " + year + ".");
+            }
+            for(ArchiveRecord loan: loans){
+                System.out.println(" - " + loan.getBorrower() + ": "
+                    + (loan.getStartedAt() < 0 ? "?" : Instant.ofEpochMilli(loan.getStartedAt()).toString())
+                    + " to " + Instant.ofEpochMilli(loan.getEndedAt()));
+            }
+        }catch(IllegalArgumentException e){
+            System.out.println("Error: " + e.getMessage());
+        }catch(IOException e){
+            System.out.println("Error reading the archive: " + e.getMessage());
+        }
+    }
+
     // 8. View all books
     private static void viewAllBooks(){
         System.out.println("\n=== All Books ===");
-        List<Book> allBooks = library.getAllBooks();
-        if(allBooks.isEmpty()){
+        int shown = showPaged(BookFilter.all());
+        if(shown == 0){
             System.out.println("No books in the library.");
         }else{
-            for(Book book: allBooks){
-                displayBook(book);
-            }
-            System.out.println("Total books: " + allBooks.size());
+            System.out.println("Total books: " + library.getTotalBookCount());
         }
     }
     // 9. View all borrowed books
@@ -367,6 +519,27 @@ public class LibraryApplication {
         
     }
 
+    // Helper method to display books one page at a time, returns how many books were shown
+    private static int showPaged(BookFilter filter){
+        int shown = 0;
+        String cursor = null;
+        while(true){
+            BookPage page = library.pageBooks(filter, cursor, PAGE_SIZE);
+            for(Book book: page.getBooks()){
+                displayBook(book);
+            }
+            shown += page.getBooks().size();
+            if(!page.hasNext()){
+                return shown;
+            }
+            System.out.print("\nPress Enter for the next page or 'q' to stop: ");
+            if(scanner.nextLine().trim().equalsIgnoreCase("q")){
+                return shown;
+            }
+            cursor = page.getNextCursor();
+        }
+    }
+
     // Helper method to display a book
     private static void displayBook(Book book){
         System.out.println("\nTitle: " + book.getTitle());
@@ -381,6 +554,8 @@ public class LibraryApplication {
     private static void saveAndExit(){
         try{
             FileUtils.saveLibraryToFile(library, DATA_FILE);
+            FileUtils.saveBorrowersToFile(library.borrowers(), BORROWERS_FILE);
+            closeArchive();
             System.out.println("Library data saved successfully.");
             System.out.println("Thank you for using the Library Management System!");
         }catch(IOException e){
@@ -0,0 +1,366 @@
+package archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import model.Isbn;
+
+/*
+ * Append-only, compressed store of ArchiveRecords.
+ *
+ * Records are buffered in memory and written BLOCK_RECORDS at a time as one block:
+ *
+ *   header   magic, compressed length, record count, time range, ISBN key range,
+ *            a Bloom filter over the block's ISBN keys, CRC32 of the payload
+ *   payload  the records, deflate-compressed
+ *
+ * Headers are stored uncompressed. Opening a file walks the blocks once, jumping from one
+ * header to the next by the payload length and checking each payload's CRC, and keeps the
+ * headers in memory as a sparse index of one entry per block. A query checks each block's time range, key range and Bloom filter and only reads
+ * and inflates the blocks that can contain a match; getBlocksRead shows how many that was.
+ *
+ * Blocks are never rewritten. A block torn by a crash fails its length, magic or CRC check on
+ * open and is truncated away, together with anything after it. Records still in the buffer are lost on a crash unless flush was
+ * called. All methods are synchronized on the file.
+ */
+public final class ArchiveFile implements Closeable {
+
+    static final int BLOCK_RECORDS = 1024;
+    private static final int MAGIC = 0x4C41_5243; // "LARC"
+    // 10 bits per record with 4 probes: about 1% false positives
+    private static final int BLOOM_WORDS = BLOCK_RECORDS * 10 / 64;
+    private static final int BLOOM_PROBES = 4;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 * 4 + BLOOM_WORDS * 8 + 4;
+
+    private final FileChannel channel;
+    private final List<BlockIndex> blocks = new ArrayList<>();
+    private final List<ArchiveRecord> pending = new ArrayList<>(BLOCK_RECORDS);
+    private long recordCount;
+    private long blocksRead;
+
+    private ArchiveFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Opens or creates the archive, reading the block headers into the index
+    public static ArchiveFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ArchiveFile archive = new ArchiveFile(channel);
+        try {
+            archive.loadIndex();
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("Failed to open archive " + path + ": " + e.getMessage());
+        }
+        return archive;
+    }
+
+    public synchronized void append(ArchiveRecord record) throws IOException {
+        pending.add(record);
+        recordCount++;
+        if (pending.size() == BLOCK_RECORDS) {
+            writeBlock();
+        }
+    }
+
+    // Writes buffered records as a (possibly short) block and forces it to disk
+    public synchronized void flush() throws IOException {
+        if (!pending.isEmpty()) {
+            writeBlock();
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            flush();
+            channel.close();
+        }
+    }
+
+    // Records for the ISBN key (or any ISBN if isbnKey is negative) whose time span
+    // overlaps [from, to), oldest block first
+    public synchronized List<ArchiveRecord> find(ArchiveRecord.Type type, long isbnKey, long from, long to) throws IOException {
+        List<ArchiveRecord> found = new ArrayList<>();
+        for (BlockIndex block : blocks) {
+            if (block.mayContain(isbnKey, from, to)) {
+                for (ArchiveRecord record : readBlock(block)) {
+                    if (matches(record, type, isbnKey, from, to)) {
+                        found.add(record);
+                    }
+                }
+            }
+        }
+        for (ArchiveRecord record : pending) {
+            if (matches(record, type, isbnKey, from, to)) {
+                found.add(record);
+            }
+        }
+        return found;
+    }
+
+    // Loans of one book that were open at any time during the given (UTC) year
+    public List<ArchiveRecord> loansOf(String isbn, int year) throws IOException {
+        long from = Year.of(year).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long to = Year.of(year + 1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long key = Isbn.tryToKey(isbn);
+        if (key < 0) {
+            return new ArrayList<>();
+        }
+        List<ArchiveRecord> loans = find(ArchiveRecord.Type.LOAN, key, from, to);
+        // two text ids may share a key
+        if (Isbn.isTextKey(key)) {
+            loans.removeIf(record -> !record.getISBN().equals(isbn));
+        }
+        return loans;
+    }
+
+    public synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    // Blocks read and inflated by queries since the file was opened
+    public synchronized long getBlocksRead() {
+        return blocksRead;
+    }
+
+    /////////////////////////////////////Blocks////////////////////////////////////
+
+    private static boolean matches(ArchiveRecord record, ArchiveRecord.Type type, long isbnKey, long from, long to) {
+        return (type == null || record.getType() == type)
+            && (isbnKey < 0 || record.getIsbnKey() == isbnKey)
+            && record.overlaps(from, to);
+    }
+
+    private void writeBlock() throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(pending.size() * 64);
+        DataOutputStream out = new DataOutputStream(raw);
+        BlockIndex index = new BlockIndex();
+        for (ArchiveRecord record : pending) {
+            record.writeTo(out);
+            index.add(record);
+        }
+        out.flush();
+        byte[] payload = deflate(raw.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        index.offset = channel.size();
+        index.length = payload.length;
+        index.crc = (int) crc.getValue();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        index.writeHeader(buffer);
+        buffer.put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, index.offset + buffer.position());
+        }
+        blocks.add(index);
+        pending.clear();
+    }
+
+    private List<ArchiveRecord> readBlock(BlockIndex block) throws IOException {
+        blocksRead++;
+        byte[] payload = readPayload(block);
+        if (!block.matchesCrc(payload)) {
+            throw new IOException("Archive block at " + block.offset + " is corrupt");
+        }
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(inflate(payload)));
+        List<ArchiveRecord> records = new ArrayList<>(block.count);
+        for (int i = 0; i < block.count; i++) {
+            records.add(ArchiveRecord.readFrom(in));
+        }
+        return records;
+    }
+
+    private void loadIndex() throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, offset + header.position()) >= 0) {
+                // keep reading until the header is complete
+            }
+            header.flip();
+            BlockIndex block = BlockIndex.readHeader(header);
+            if (block == null || offset + HEADER_SIZE + block.length > size) {
+                break;
+            }
+            block.offset = offset;
+            if (!block.matchesCrc(readPayload(block))) {
+                break;
+            }
+            blocks.add(block);
+            recordCount += block.count;
+            offset += HEADER_SIZE + block.length;
+        }
+        if (offset < size) {
+            // a block torn by a crash; everything before it is intact
+            channel.truncate(offset);
+        }
+    }
+
+    private byte[] readPayload(BlockIndex block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(block.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, block.offset + HEADER_SIZE + buffer.position()) < 0) {
+                throw new IOException("Archive block at " + block.offset + " is truncated");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Archive block ends early");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Archive block cannot be inflated: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /*
+     * Header of one block, kept in memory as its index entry
+     */
+    private static final class BlockIndex {
+        long offset;
+        int length;
+        int count;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long minKey = Long.MAX_VALUE;
+        long maxKey = Long.MIN_VALUE;
+        final long[] bloom = new long[BLOOM_WORDS];
+        int crc;
+
+        void add(ArchiveRecord record) {
+            count++;
+            minTime = Math.min(minTime, record.earliest());
+            maxTime = Math.max(maxTime, record.getEndedAt());
+            minKey = Math.min(minKey, record.getIsbnKey());
+            maxKey = Math.max(maxKey, record.getIsbnKey());
+            long h = mix(record.getIsbnKey());
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                int bit = bloomBit(h, i);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        boolean matchesCrc(byte[] payload) {
+            CRC32 checksum = new CRC32();
+            checksum.update(payload);
+            return (int) checksum.getValue() == crc;
+        }
+
+        boolean mayContain(long isbnKey, long from, long to) {
+            if (maxTime < from || minTime >= to) {
+                return false;
+            }
+            if (isbnKey < 0) {
+                return true;
+            }
+            if (isbnKey < minKey || isbnKey > maxKey) {
+                return false;
+            }
+            long h = mix(isbnKey);
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                int bit = bloomBit(h, i);
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void writeHeader(ByteBuffer buffer) {
+            buffer.putInt(MAGIC).putInt(length).putInt(count)
+                .putLong(minTime).putLong(maxTime).putLong(minKey).putLong(maxKey);
+            for (long word : bloom) {
+                buffer.putLong(word);
+            }
+            buffer.putInt(crc);
+        }
+
+        // null if the bytes are not a block header
+        static BlockIndex readHeader(ByteBuffer buffer) {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                return null;
+            }
+            BlockIndex block = new BlockIndex();
+            block.length = buffer.getInt();
+            block.count = buffer.getInt();
+            if (block.length < 0 || block.count < 0) {
+                return null;
+            }
+            block.minTime = buffer.getLong();
+            block.maxTime = buffer.getLong();
+            block.minKey = buffer.getLong();
+            block.maxKey = buffer.getLong();
+            for (int i = 0; i < BLOOM_WORDS; i++) {
+                block.bloom[i] = buffer.getLong();
+            }
+            block.crc = buffer.getInt();
+            return block;
+        }
+
+        // double hashing: probe i uses h1 + i * h2
+        private static int bloomBit(long h, int i) {
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32) | 1;
+            return Math.floorMod(h1 + i * h2, BLOOM_WORDS * 64);
+        }
+
+        private static long mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 29);
+        }
+    }
+}
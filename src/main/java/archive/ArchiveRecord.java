@@ -0,0 +1,156 @@
+package archive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import model.Book;
+
+/*
+ * One historical fact kept in an ArchiveFile: a book that was removed from the catalog, or a
+ * loan that has been returned. Times are wall clock milliseconds; a loan whose start was not
+ * seen (it began before archiving was switched on) has a start time of -1.
+ */
+public final class ArchiveRecord {
+
+    public enum Type { REMOVED_BOOK, LOAN }
+
+    private final Type type;
+    private final long isbnKey;
+    private final String isbn;
+    private final String title;
+    private final String author;
+    private final String genre;
+    private final int publishedYear;
+    // null for removed books
+    private final String borrower;
+    private final long startedAt;
+    private final long endedAt;
+
+    private ArchiveRecord(Type type, long isbnKey, String isbn, String title, String author, String genre, int publishedYear,
+                          String borrower, long startedAt, long endedAt) {
+        this.type = type;
+        this.isbnKey = isbnKey;
+        this.isbn = isbn;
+        this.title = title;
+        this.author = author;
+        this.genre = genre;
+        this.publishedYear = publishedYear;
+        this.borrower = borrower;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+    }
+
+    public static ArchiveRecord removedBook(Book book, long removedAt) {
+        return new ArchiveRecord(Type.REMOVED_BOOK, book.getIsbnKey(), book.getISBN(), book.getTitle(), book.getAuthor(),
+            book.getGenre(), book.getPublishedYear(), null, removedAt, removedAt);
+    }
+
+    public static ArchiveRecord loan(Book book, String borrower, long borrowedAt, long returnedAt) {
+        return new ArchiveRecord(Type.LOAN, book.getIsbnKey(), book.getISBN(), book.getTitle(), book.getAuthor(),
+            book.getGenre(), book.getPublishedYear(), borrower, borrowedAt, returnedAt);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getIsbnKey() {
+        return isbnKey;
+    }
+
+    public String getISBN() {
+        return isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public int getPublishedYear() {
+        return publishedYear;
+    }
+
+    public String getBorrower() {
+        return borrower;
+    }
+
+    // Borrow time for loans, removal time for removed books
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    // Return time for loans, removal time for removed books
+    public long getEndedAt() {
+        return endedAt;
+    }
+
+    // Earliest time the record covers, also for loans whose start is unknown
+    long earliest() {
+        return startedAt < 0 ? endedAt : startedAt;
+    }
+
+    // True if the record's time span [start, end] overlaps [from, to)
+    boolean overlaps(long from, long to) {
+        return earliest() < to && endedAt >= from;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeLong(isbnKey);
+        writeString(out, isbn);
+        writeString(out, title);
+        writeString(out, author);
+        writeString(out, genre);
+        out.writeInt(publishedYear);
+        writeString(out, borrower == null ? "" : borrower);
+        out.writeLong(startedAt);
+        out.writeLong(endedAt);
+    }
+
+    static ArchiveRecord readFrom(DataInput in) throws IOException {
+        Type type = Type.values()[in.readUnsignedByte()];
+        long isbnKey = in.readLong();
+        String isbn = readString(in);
+        String title = readString(in);
+        String author = readString(in);
+        String genre = readString(in);
+        int publishedYear = in.readInt();
+        String borrower = readString(in);
+        long startedAt = in.readLong();
+        long endedAt = in.readLong();
+        return new ArchiveRecord(type, isbnKey, isbn, title, author, genre, publishedYear,
+            type == Type.LOAN ? borrower : null, startedAt, endedAt);
+    }
+
+    // Length-prefixed UTF-8; writeUTF would fail on strings over 64 KB
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Archive record has a string of length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveRecord{" + "type=" + type + ", ISBN=" + getISBN() + ", title=" + title
+        + (borrower == null ? "" : ", borrower=" + borrower) + ", startedAt=" + startedAt + ", endedAt=" + endedAt + "}";
+    }
+}
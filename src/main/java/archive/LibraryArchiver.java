@@ -0,0 +1,191 @@
+package archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import model.Library;
+import model.LibraryEvent;
+import model.LibraryEventPublisher;
+
+/*
+ * Moves history out of a Library into an ArchiveFile as it happens: every returned loan and
+ * every removed book becomes an ArchiveRecord.
+ *
+ * The archiver is a BLOCK subscriber of Library.events(): it never misses an event, because
+ * changes to the library wait while the archiver is a full event ring behind. Its events are
+ * delivered on a thread of its own, so archive I/O never runs under the library lock or on a
+ * shared pool. It only remembers the loans currently open (one entry per borrowed book) to know
+ * when each started; loans that were already open when it was attached are archived with an
+ * unknown start.
+ *
+ * The same thread flushes the archive every few seconds when records were added, so a crash
+ * loses at most the history of the last FLUSH_INTERVAL_MILLIS rather than a whole unwritten
+ * block. Each flush may write a short block.
+ *
+ * If the file fails, archiving stops, the library is no longer held back, and close reports
+ * the error.
+ */
+public final class LibraryArchiver implements Flow.Subscriber<List<LibraryEvent>>, Closeable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+    static final long FLUSH_INTERVAL_MILLIS = 5_000;
+
+    private final Library library;
+    private final ArchiveFile archive;
+    // delivers events and runs the timed flush, one task at a time
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread archiving = new Thread(task, "library-archiver");
+        archiving.setDaemon(true);
+        return archiving;
+    });
+    // open loans by ISBN key, only touched by the archiving thread
+    private final Map<Long, LibraryEvent> openLoans = new HashMap<>();
+    // records were appended since the last flush, only touched by the archiving thread
+    private boolean unflushed;
+    private volatile Flow.Subscription subscription;
+    // sequence after the last event handled; changes are signalled on the archiver's monitor
+    private volatile long processed;
+    private volatile Throwable failure;
+
+    private LibraryArchiver(Library library, ArchiveFile archive) {
+        this.library = library;
+        this.archive = archive;
+        this.processed = library.events().getNextSequence();
+    }
+
+    // Starts archiving the library's changes from now on
+    public static LibraryArchiver attach(Library library, ArchiveFile archive) {
+        return attach(library, archive, FLUSH_INTERVAL_MILLIS);
+    }
+
+    static LibraryArchiver attach(Library library, ArchiveFile archive, long flushIntervalMillis) {
+        LibraryArchiver archiver;
+        // no change can be published between reading the start sequence and subscribing
+        synchronized (library) {
+            archiver = new LibraryArchiver(library, archive);
+            library.events().subscribe(archiver, LibraryEventPublisher.DEFAULT_BATCH_SIZE, archiver.executor,
+                LibraryEventPublisher.Overflow.BLOCK);
+        }
+        archiver.executor.scheduleWithFixedDelay(archiver::flushIfNeeded,
+            flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        return archiver;
+    }
+
+    public ArchiveFile getArchive() {
+        return archive;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<LibraryEvent> events) {
+        try {
+            for (LibraryEvent event : events) {
+                archive(event);
+            }
+            advanceTo(events.get(events.size() - 1).getSequence() + 1);
+        } catch (IOException e) {
+            subscription.cancel();
+            onError(e);
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable error) {
+        failure = error;
+        notifyAll();
+    }
+
+    @Override
+    public void onComplete() {
+        // the event feed never completes
+    }
+
+    private void archive(LibraryEvent event) throws IOException {
+        switch (event.getType()) {
+            case BOOK_BORROWED:
+                openLoans.put(event.getBook().getIsbnKey(), event);
+                break;
+            case BOOK_RETURNED:
+                LibraryEvent borrowed = openLoans.remove(event.getBook().getIsbnKey());
+                long borrowedAt = borrowed == null ? -1 : borrowed.getTimestamp();
+                archive.append(ArchiveRecord.loan(event.getBook(), event.getBorrowerName(), borrowedAt, event.getTimestamp()));
+                unflushed = true;
+                break;
+            case BOOK_REMOVED:
+                openLoans.remove(event.getBook().getIsbnKey());
+                archive.append(ArchiveRecord.removedBook(event.getBook(), event.getTimestamp()));
+                unflushed = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void advanceTo(long sequence) {
+        processed = sequence;
+        notifyAll();
+    }
+
+    // Timed flush, run on the archiving thread between deliveries
+    private void flushIfNeeded() {
+        if (!unflushed || failure != null) {
+            return;
+        }
+        try {
+            archive.flush();
+            unflushed = false;
+        } catch (IOException e) {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            onError(e);
+        }
+    }
+
+    // Waits until every change made so far is archived (or archiving failed), then closes the file
+    @Override
+    public void close() throws IOException {
+        long target = library.events().getNextSequence();
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        synchronized (this) {
+            long remaining;
+            while (processed < target && failure == null && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        archive.close();
+        if (failure != null) {
+            throw new IOException("Archiving stopped: " + failure.getMessage());
+        }
+        if (processed < target) {
+            throw new IOException("Timed out archiving the last " + (target - processed) + " changes");
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package exception;
+
+public class EventOverrunException extends Exception {
+    
+    public EventOverrunException(String message) {
+        super(message);
+    }
+}
@@ -1,8 +1,8 @@
 package model;
 
 import java.io.Serializable;
-import java.util.Objects;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class Book implements Serializable {
@@ -18,12 +18,15 @@ public class Book implements Serializable {
     
     @JsonProperty("isbn")
     private final String isbn;
+
+    // Canonical 64-bit ISBN key, see Isbn. Used for identity, hashing and lookups.
+    private final long isbnKey;
     
     @JsonProperty("publishedYear")
     private final int publishedYear;
     
     @JsonProperty("available")
-    private boolean isAvailable;
+    private volatile boolean isAvailable;
 
     @JsonCreator
     public Book(@JsonProperty("title") String title,
@@ -31,10 +34,14 @@ public class Book implements Serializable {
                 @JsonProperty("genre") String genre,
                 @JsonProperty("isbn") String isbn,
                 @JsonProperty("publishedYear") int publishedYear) {
-        this.title = title;
-        this.author = author;
-        this.genre = genre;
-        this.isbn = isbn;
+        // files written before the indexes existed may lack these fields; the indexes,
+        // search cache and reports all need a key, so a missing field becomes empty
+        this.title = title == null ? "" : title;
+        this.author = author == null ? "" : author;
+        this.genre = genre == null ? "" : genre;
+        // normalize once so "978-0132350884" and "9780132350884" are the same book
+        this.isbnKey = Isbn.toKey(isbn);
+        this.isbn = Isbn.isTextKey(isbnKey) ? isbn : Isbn.fromKey(isbnKey);
         this.publishedYear = publishedYear;
         this.isAvailable = false;
     }
@@ -56,6 +63,11 @@ public class Book implements Serializable {
         return this.isbn;
     }
 
+    @JsonIgnore
+    public long getIsbnKey(){
+        return this.isbnKey;
+    }
+
     public int getPublishedYear(){
         return this.publishedYear;
     }
@@ -78,13 +90,13 @@ public class Book implements Serializable {
         if(o == null || getClass() != o.getClass()) return false;
 
         Book book = (Book) o;
-        return isbn.equals(book.isbn);
+        return isbnKey == book.isbnKey;
     }
 
     // Hashcode method to generate a unique hash value for the book
     @Override
     public int hashCode(){
-        return Objects.hash(isbn);
+        return Long.hashCode(isbnKey);
     }
 
     // toString method to display the book details
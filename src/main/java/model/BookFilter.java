@@ -0,0 +1,75 @@
+package model;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/*
+ * Immutable filter used by the lazy listing methods of Library.
+ * Each call returns a new filter so a base filter can be shared safely.
+ *
+ *   BookFilter.all().available().genre("Art").publishedBetween(1990, 2000)
+ */
+public final class BookFilter implements Predicate<Book> {
+
+    private static final BookFilter ALL = new BookFilter(null, null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    // null means "any availability"
+    private final Boolean available;
+    // null means "any genre"
+    private final String genre;
+    private final int fromYear;
+    private final int toYear;
+
+    private BookFilter(Boolean available, String genre, int fromYear, int toYear) {
+        this.available = available;
+        this.genre = genre;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    // Filter that matches every book
+    public static BookFilter all() {
+        return ALL;
+    }
+
+    // Only books that can be borrowed right now
+    public BookFilter available() {
+        return new BookFilter(Boolean.TRUE, genre, fromYear, toYear);
+    }
+
+    // Only books that are currently borrowed
+    public BookFilter borrowed() {
+        return new BookFilter(Boolean.FALSE, genre, fromYear, toYear);
+    }
+
+    // Only books of the given genre (exact match, like findBookByGenre)
+    public BookFilter genre(String genre) {
+        return new BookFilter(available, Objects.requireNonNull(genre, "genre"), fromYear, toYear);
+    }
+
+    // Only books published between the two years, both inclusive
+    public BookFilter publishedBetween(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("fromYear must not be after toYear");
+        }
+        return new BookFilter(available, genre, fromYear, toYear);
+    }
+
+    @Override
+    public boolean test(Book book) {
+        if (available != null && book.isAvailable() != available) {
+            return false;
+        }
+        if (genre != null && !genre.equals(book.getGenre())) {
+            return false;
+        }
+        int year = book.getPublishedYear();
+        return year >= fromYear && year <= toYear;
+    }
+
+    @Override
+    public String toString() {
+        return "BookFilter{" + "available=" + available + ", genre=" + genre
+        + ", fromYear=" + fromYear + ", toYear=" + toYear + "}";
+    }
+}
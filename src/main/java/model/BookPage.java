@@ -0,0 +1,36 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * One page of books returned by Library.pageBooks.
+ * The cursor is the ISBN of the last book on the page; pass it back to get the next page.
+ */
+public final class BookPage {
+
+    private final List<Book> books;
+    private final String nextCursor;
+
+    BookPage(List<Book> books, String nextCursor) {
+        this.books = Collections.unmodifiableList(books);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    // Cursor for the following page, or null if this is the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return books.isEmpty();
+    }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/*
+ * Immutable multi-field query over the catalog, run through Library.query.
+ * Every criterion is optional and all given criteria must match.
+ *
+ *   BookQuery.all().author("J. Bloch").genre("Software").available().publishedBetween(1990, 2020)
+ *
+ * The query is also a Predicate, which the planner uses for whatever no index covers.
+ */
+public final class BookQuery implements Predicate<Book> {
+
+    private static final long NO_ISBN = -1;
+    // key of an ISBN no book has, so the query matches nothing; real keys are never negative
+    private static final long UNKNOWN_ISBN = -2;
+    private static final BookQuery ALL =
+        new BookQuery(NO_ISBN, null, null, null, null, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    // canonical ISBN key, UNKNOWN_ISBN or NO_ISBN
+    private final long isbnKey;
+    // the ISBN as given, for descriptions
+    private final String isbn;
+    private final String isbnPrefix;
+    // key range [from, to) of isbnPrefix, computed once
+    private final long[] prefixRange;
+    private final String title;
+    private final String author;
+    private final String genre;
+    // null means "any availability"
+    private final Boolean available;
+    private final int fromYear;
+    private final int toYear;
+
+    private BookQuery(long isbnKey, String isbn, String isbnPrefix, String title, String author, String genre,
+                      Boolean available, int fromYear, int toYear) {
+        this.isbnKey = isbnKey;
+        this.isbn = isbn;
+        this.isbnPrefix = isbnPrefix;
+        this.prefixRange = isbnPrefix == null ? null : Isbn.prefixRange(isbnPrefix);
+        this.title = title;
+        this.author = author;
+        this.genre = genre;
+        this.available = available;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    // Query that matches every book
+    public static BookQuery all() {
+        return ALL;
+    }
+
+    // Exact ISBN; one no book has makes the query match nothing
+    public BookQuery isbn(String isbn) {
+        long key = Isbn.tryToKey(Objects.requireNonNull(isbn, "isbn"));
+        return new BookQuery(key < 0 ? UNKNOWN_ISBN : key, isbn, isbnPrefix, title, author, genre,
+            available, fromYear, toYear);
+    }
+
+    // ISBN-13 prefix such as "978-0-13", separators ignored
+    public BookQuery isbnPrefix(String prefix) {
+        if (Isbn.prefixRange(prefix) == null) {
+            throw new IllegalArgumentException("ISBN prefix must be at most 13 digits: " + prefix);
+        }
+        return new BookQuery(isbnKey, isbn, prefix, title, author, genre, available, fromYear, toYear);
+    }
+
+    public BookQuery title(String title) {
+        return new BookQuery(isbnKey, isbn, isbnPrefix, Objects.requireNonNull(title, "title"), author, genre,
+            available, fromYear, toYear);
+    }
+
+    public BookQuery author(String author) {
+        return new BookQuery(isbnKey, isbn, isbnPrefix, title, Objects.requireNonNull(author, "author"), genre,
+            available, fromYear, toYear);
+    }
+
+    public BookQuery genre(String genre) {
+        return new BookQuery(isbnKey, isbn, isbnPrefix, title, author, Objects.requireNonNull(genre, "genre"),
+            available, fromYear, toYear);
+    }
+
+    public BookQuery available() {
+        return new BookQuery(isbnKey, isbn, isbnPrefix, title, author, genre, Boolean.TRUE, fromYear, toYear);
+    }
+
+    public BookQuery borrowed() {
+        return new BookQuery(isbnKey, isbn, isbnPrefix, title, author, genre, Boolean.FALSE, fromYear, toYear);
+    }
+
+    // Published between the two years, both inclusive
+    public BookQuery publishedBetween(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("fromYear must not be after toYear");
+        }
+        return new BookQuery(isbnKey, isbn, isbnPrefix, title, author, genre, available, fromYear, toYear);
+    }
+
+    // Accessors for the planner
+    boolean hasIsbn() { return isbnKey != NO_ISBN; }
+    long getIsbnKey() { return isbnKey; }
+    String getIsbn() { return isbn; }
+    String getIsbnPrefix() { return isbnPrefix; }
+    long[] getPrefixRange() { return prefixRange; }
+    String getTitle() { return title; }
+    String getAuthor() { return author; }
+    String getGenre() { return genre; }
+    Boolean getAvailable() { return available; }
+    int getFromYear() { return fromYear; }
+    int getToYear() { return toYear; }
+
+    boolean hasYearRange() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean test(Book book) {
+        if (isbnKey != NO_ISBN && (isbnKey != book.getIsbnKey()
+                || Isbn.isTextKey(isbnKey) && !isbn.equals(book.getISBN()))) {
+            return false;
+        }
+        if (prefixRange != null) {
+            long key = book.getIsbnKey();
+            if (key < prefixRange[0] || key >= prefixRange[1]) {
+                return false;
+            }
+        }
+        if (title != null && !title.equals(book.getTitle())) {
+            return false;
+        }
+        if (author != null && !author.equals(book.getAuthor())) {
+            return false;
+        }
+        if (genre != null && !genre.equals(book.getGenre())) {
+            return false;
+        }
+        if (available != null && book.isAvailable() != available) {
+            return false;
+        }
+        int year = book.getPublishedYear();
+        return year >= fromYear && year <= toYear;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (isbnKey != NO_ISBN) parts.add("isbn=" + isbn);
+        if (isbnPrefix != null) parts.add("isbnPrefix=" + isbnPrefix);
+        if (title != null) parts.add("title=" + title);
+        if (author != null) parts.add("author=" + author);
+        if (genre != null) parts.add("genre=" + genre);
+        if (available != null) parts.add("available=" + available);
+        if (hasYearRange()) parts.add("year=" + fromYear + ".." + toYear);
+        return "BookQuery{" + String.join(", ", parts) + "}";
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import util.LongIntHashMap;
+
+/*
+ * Hash index from ISBN key to Book for exact lookups, next to the ordered catalog.
+ *
+ * Each book gets a dense int ordinal; the books sit in an array by ordinal and a
+ * LongIntHashMap maps the ISBN key to it, so a lookup is one probe into primitive arrays with
+ * no boxing of the key. Ordinals of removed books are reused.
+ *
+ * Writers are the Library's mutators and already hold the library lock. Readers do not take
+ * it: they read optimistically under a StampedLock and only fall back to its read lock when a
+ * write happened in between.
+ */
+final class BookTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private LongIntHashMap ordinals = new LongIntHashMap();
+    private Book[] books = new Book[MIN_CAPACITY];
+    private int nextOrdinal;
+    // ordinals freed by remove, reused before nextOrdinal grows
+    private int[] free = new int[MIN_CAPACITY];
+    private int freeCount;
+
+    Book get(long isbnKey) {
+        long stamp = lock.tryOptimisticRead();
+        Book book = lookup(isbnKey);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                book = lookup(isbnKey);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return book;
+    }
+
+    void add(Book book) {
+        long stamp = lock.writeLock();
+        try {
+            int ordinal;
+            if (freeCount > 0) {
+                ordinal = free[--freeCount];
+            } else {
+                ordinal = nextOrdinal++;
+                if (ordinal == books.length) {
+                    books = Arrays.copyOf(books, ordinal * 2);
+                }
+            }
+            books[ordinal] = book;
+            ordinals.put(book.getIsbnKey(), ordinal);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(Book book) {
+        long stamp = lock.writeLock();
+        try {
+            int ordinal = ordinals.remove(book.getIsbnKey());
+            if (ordinal < 0) {
+                return;
+            }
+            books[ordinal] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = ordinal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Replaces the contents with books whose ISBN keys are already unique
+    void load(Book[] unique) {
+        LongIntHashMap map = new LongIntHashMap(unique.length, LongIntHashMap.DEFAULT_LOAD_FACTOR, -1);
+        for (int i = 0; i < unique.length; i++) {
+            map.put(unique[i].getIsbnKey(), i);
+        }
+        Book[] array = Arrays.copyOf(unique, Math.max(MIN_CAPACITY, unique.length));
+        long stamp = lock.writeLock();
+        try {
+            ordinals = map;
+            books = array;
+            nextOrdinal = unique.length;
+            freeCount = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // May see a half-applied write; get validates the result before trusting it
+    private Book lookup(long isbnKey) {
+        int ordinal = ordinals.get(isbnKey);
+        Book[] array = books;
+        if (ordinal < 0 || ordinal >= array.length) {
+            return null;
+        }
+        Book book = array[ordinal];
+        // an ordinal reused by a concurrent writer can point at another book
+        return book != null && book.getIsbnKey() == isbnKey ? book : null;
+    }
+}
@@ -0,0 +1,96 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/*
+ * A registered borrower: a compact id, the name used by borrowBook and returnBook, a tier
+ * that sets the loan limit, and the number of loans currently out.
+ *
+ * The loan counter is checked and incremented in one compare-and-set, so the limit holds
+ * even without the library lock. Only id, name and tier are persisted; the counter is
+ * derived from the library's borrower map when the two are brought together.
+ */
+public final class Borrower {
+
+    private final int id;
+    private final String name;
+    private volatile BorrowerTier tier;
+    private final AtomicInteger activeLoans = new AtomicInteger();
+
+    Borrower(int id, String name, BorrowerTier tier) {
+        this.id = id;
+        this.name = name;
+        this.tier = tier;
+    }
+
+    // Used when reading a registry file; the tier is resolved by name by BorrowerRegistry
+    @JsonCreator
+    Borrower(@JsonProperty("id") int id, @JsonProperty("name") String name, @JsonProperty("tier") String tierName) {
+        this(id, name, new BorrowerTier(tierName, 0));
+    }
+
+    @JsonProperty("id")
+    public int getId() {
+        return id;
+    }
+
+    @JsonProperty("name")
+    public String getName() {
+        return name;
+    }
+
+    @JsonIgnore
+    public BorrowerTier getTier() {
+        return tier;
+    }
+
+    @JsonProperty("tier")
+    String getTierName() {
+        return tier.getName();
+    }
+
+    void setTier(BorrowerTier tier) {
+        this.tier = tier;
+    }
+
+    @JsonIgnore
+    public int getActiveLoans() {
+        return activeLoans.get();
+    }
+
+    // Loans left before the tier limit is reached
+    @JsonIgnore
+    public int getRemainingLoans() {
+        return Math.max(0, tier.getLoanLimit() - activeLoans.get());
+    }
+
+    // Takes one loan if the borrower is below the tier limit
+    boolean tryAcquireLoan() {
+        while (true) {
+            int current = activeLoans.get();
+            if (current >= tier.getLoanLimit()) {
+                return false;
+            }
+            if (activeLoans.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseLoan() {
+        activeLoans.updateAndGet(current -> Math.max(0, current - 1));
+    }
+
+    void setActiveLoans(int loans) {
+        activeLoans.set(loans);
+    }
+
+    @Override
+    public String toString() {
+        return "Borrower{" + "id=" + id + ", name='" + name + '\'' + ", tier=" + tier.getName()
+        + ", activeLoans=" + activeLoans.get() + "}";
+    }
+}
@@ -0,0 +1,220 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import util.StringIdMap;
+
+/*
+ * Every borrower the library has seen, with their tier and loan count.
+ *
+ * Borrowers get dense int ids in registration order. Names are interned in a StringIdMap and
+ * the Borrower objects sit in an array by id, so lookups by name or id are O(1) and take no
+ * lock: they read optimistically under a StampedLock and only take its read lock if a
+ * registration happened at the same time.
+ *
+ * The registry is saved on its own (util.FileUtils.saveBorrowersToFile) so ids and tiers
+ * survive a restart; the loan counts are rebuilt from the library's borrower map instead.
+ */
+public final class BorrowerRegistry {
+
+    private final StampedLock lock = new StampedLock();
+    private final StringIdMap names = new StringIdMap();
+    private Borrower[] byId = new Borrower[16];
+    // guarded by lock; tiers are few and rarely change
+    private final Map<String, BorrowerTier> tiers = new LinkedHashMap<>();
+    private volatile BorrowerTier defaultTier;
+
+    public BorrowerRegistry() {
+        defaultTier = new BorrowerTier(BorrowerTier.STANDARD, BorrowerTier.STANDARD_LOAN_LIMIT);
+        tiers.put(defaultTier.getName(), defaultTier);
+    }
+
+    // Rebuilds a saved registry; borrowers must be listed by id starting at 0
+    @JsonCreator
+    BorrowerRegistry(@JsonProperty("tiers") List<BorrowerTier> tiers,
+                     @JsonProperty("defaultTier") String defaultTier,
+                     @JsonProperty("borrowers") List<Borrower> borrowers) {
+        this();
+        if (tiers != null) {
+            for (BorrowerTier tier : tiers) {
+                defineTier(tier.getName(), tier.getLoanLimit());
+            }
+        }
+        if (defaultTier != null) {
+            setDefaultTier(defaultTier);
+        }
+        if (borrowers != null) {
+            for (Borrower saved : borrowers) {
+                Borrower borrower = register(saved.getName());
+                if (borrower.getId() != saved.getId()) {
+                    throw new IllegalArgumentException("Borrower ids must be unique and consecutive from 0, found "
+                        + saved.getId() + " for " + saved.getName());
+                }
+                borrower.setTier(tier(saved.getTierName()));
+            }
+        }
+    }
+
+    // The borrower with this name, registered with the default tier if it is new
+    public Borrower register(String name) {
+        Objects.requireNonNull(name, "name");
+        Borrower borrower = find(name);
+        if (borrower != null) {
+            return borrower;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int id = names.intern(name);
+            if (id == byId.length) {
+                byId = Arrays.copyOf(byId, id * 2);
+            }
+            if (byId[id] == null) {
+                byId[id] = new Borrower(id, name, defaultTier);
+            }
+            return byId[id];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // The borrower with this name, or null
+    public Borrower find(String name) {
+        long stamp = lock.tryOptimisticRead();
+        Borrower borrower = lookup(names.idOf(name));
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                borrower = lookup(names.idOf(name));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return borrower;
+    }
+
+    // The borrower with this id, or null
+    public Borrower get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        Borrower borrower = lookup(id);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                borrower = lookup(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return borrower;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return names.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // All borrowers in id order
+    @JsonProperty("borrowers")
+    public List<Borrower> borrowers() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(Arrays.asList(byId).subList(0, names.size()));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /////////////////////////////////////Tiers////////////////////////////////////
+
+    // Adds a tier, or changes the limit of an existing one for all its borrowers
+    public BorrowerTier defineTier(String name, int loanLimit) {
+        long stamp = lock.writeLock();
+        try {
+            BorrowerTier tier = tiers.get(name);
+            if (tier == null) {
+                tier = new BorrowerTier(name, loanLimit);
+                tiers.put(name, tier);
+            } else {
+                tier.setLoanLimit(loanLimit);
+            }
+            return tier;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public BorrowerTier tier(String name) {
+        long stamp = lock.readLock();
+        try {
+            BorrowerTier tier = tiers.get(name);
+            if (tier == null) {
+                throw new IllegalArgumentException("Unknown borrower tier: " + name);
+            }
+            return tier;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @JsonProperty("tiers")
+    public List<BorrowerTier> tiers() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(tiers.values());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Moves a borrower, registering them if needed, to another tier
+    public Borrower assignTier(String borrowerName, String tierName) {
+        BorrowerTier tier = tier(tierName);
+        Borrower borrower = register(borrowerName);
+        borrower.setTier(tier);
+        return borrower;
+    }
+
+    @JsonIgnore
+    public BorrowerTier getDefaultTier() {
+        return defaultTier;
+    }
+
+    @JsonProperty("defaultTier")
+    String getDefaultTierName() {
+        return defaultTier.getName();
+    }
+
+    // Tier given to borrowers registered from now on
+    public void setDefaultTier(String tierName) {
+        defaultTier = tier(tierName);
+    }
+
+    /////////////////////////////////////Loan counts////////////////////////////////////
+
+    // Sets every loan counter from a borrower map, e.g. after loading a library
+    void resetLoans(Map<String, List<Book>> borrowerMap) {
+        for (Borrower borrower : borrowers()) {
+            borrower.setActiveLoans(0);
+        }
+        for (Map.Entry<String, List<Book>> entry : borrowerMap.entrySet()) {
+            register(entry.getKey()).setActiveLoans(entry.getValue().size());
+        }
+    }
+
+    // May see a half-applied registration; callers validate before trusting it
+    private Borrower lookup(int id) {
+        Borrower[] array = byId;
+        return id < 0 || id >= array.length ? null : array[id];
+    }
+}
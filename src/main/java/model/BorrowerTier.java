@@ -0,0 +1,46 @@
+package model;
+
+import java.util.Objects;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/*
+ * A named loan limit shared by a group of borrowers, e.g. "standard" or "staff".
+ * Tiers are defined through BorrowerRegistry.defineTier; changing a tier's limit takes effect
+ * for all its borrowers on their next borrow. Loans already out are never recalled.
+ */
+public final class BorrowerTier {
+
+    public static final String STANDARD = "standard";
+    // the limit every borrower had before tiers existed
+    static final int STANDARD_LOAN_LIMIT = 6;
+
+    private final String name;
+    private volatile int loanLimit;
+
+    @JsonCreator
+    public BorrowerTier(@JsonProperty("name") String name, @JsonProperty("loanLimit") int loanLimit) {
+        this.name = Objects.requireNonNull(name, "name");
+        setLoanLimit(loanLimit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLoanLimit() {
+        return loanLimit;
+    }
+
+    void setLoanLimit(int loanLimit) {
+        if (loanLimit < 0) {
+            throw new IllegalArgumentException("Loan limit must not be negative");
+        }
+        this.loanLimit = loanLimit;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + loanLimit + " loans)";
+    }
+}
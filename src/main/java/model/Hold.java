@@ -0,0 +1,96 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * A borrower's place in the queue for a book that is out, obtained from Library.placeHold.
+ *
+ * When the book comes back, returnBook lends it straight to the first waiting hold and
+ * completes that hold's future with the book; the borrower does not need to call borrowBook.
+ * If the borrower has no loans left at that point the future fails with
+ * BorrowLimitExceededException and the book goes to the next hold instead.
+ *
+ * Futures are completed on the common pool, never on the thread that holds the library lock,
+ * so callbacks may call back into the library. Holds live in memory only and are not saved.
+ */
+public final class Hold {
+
+    public enum State { WAITING, READY, CANCELLED, FAILED }
+
+    private static final Executor COMPLETION = ForkJoinPool.commonPool();
+
+    private final Book book;
+    private final String borrowerName;
+    private final long placedAt;
+    // decided once, by whichever of cancel and hand-off gets there first
+    private final AtomicReference<State> state = new AtomicReference<>(State.WAITING);
+    private final CompletableFuture<Book> ready = new CompletableFuture<>();
+
+    Hold(Book book, String borrowerName) {
+        this.book = book;
+        this.borrowerName = borrowerName;
+        this.placedAt = System.currentTimeMillis();
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public String getBorrowerName() {
+        return borrowerName;
+    }
+
+    // Wall clock time the hold was placed, in milliseconds
+    public long getPlacedAt() {
+        return placedAt;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isWaiting() {
+        return state.get() == State.WAITING;
+    }
+
+    // Completes with the book once it has been lent to this borrower. Completing or
+    // cancelling the returned future does not affect the hold; use cancel for that.
+    public CompletableFuture<Book> whenReady() {
+        return ready.copy();
+    }
+
+    // Leaves the queue. Returns false if the book was already handed over or the hold failed.
+    public boolean cancel() {
+        if (!state.compareAndSet(State.WAITING, State.CANCELLED)) {
+            return false;
+        }
+        ready.cancel(false);
+        return true;
+    }
+
+    // Called under the library lock: lend the book to this hold unless it was cancelled
+    boolean claim() {
+        return state.compareAndSet(State.WAITING, State.READY);
+    }
+
+    void fulfil() {
+        COMPLETION.execute(() -> ready.complete(book));
+    }
+
+    // Ends a hold that can no longer be served
+    boolean fail(Exception cause) {
+        if (!state.compareAndSet(State.WAITING, State.FAILED) && !state.compareAndSet(State.READY, State.FAILED)) {
+            return false;
+        }
+        COMPLETION.execute(() -> ready.completeExceptionally(cause));
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Hold{" + "ISBN=" + book.getISBN() + ", borrower=" + borrowerName + ", state=" + state.get() + "}";
+    }
+}
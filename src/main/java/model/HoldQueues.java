@@ -0,0 +1,71 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * FIFO queues of holds, one per ISBN key, used by Library for hand-off on return.
+ *
+ * Adding and taking the next hold are O(1). A cancelled hold stays in its queue until it
+ * reaches the front and is skipped there, so cancel never has to search a queue. Queues are
+ * lock-free and can be read from any thread; Library mutates them with its lock held.
+ */
+final class HoldQueues {
+
+    private final ConcurrentHashMap<Long, Queue<Hold>> queues = new ConcurrentHashMap<>();
+
+    Hold add(Book book, String borrowerName) {
+        Hold hold = new Hold(book, borrowerName);
+        queues.computeIfAbsent(book.getIsbnKey(), key -> new ConcurrentLinkedQueue<>()).add(hold);
+        return hold;
+    }
+
+    // Removes and claims the first hold still waiting for the book, or returns null
+    Hold next(long isbnKey) {
+        Queue<Hold> queue = queues.get(isbnKey);
+        if (queue == null) {
+            return null;
+        }
+        Hold hold;
+        while ((hold = queue.poll()) != null) {
+            if (hold.claim()) {
+                break;
+            }
+        }
+        if (queue.isEmpty()) {
+            queues.remove(isbnKey, queue);
+        }
+        return hold;
+    }
+
+    // Holds still waiting for the book, in queue order
+    List<Hold> waiting(long isbnKey) {
+        List<Hold> waiting = new ArrayList<>();
+        Queue<Hold> queue = queues.get(isbnKey);
+        if (queue != null) {
+            for (Hold hold : queue) {
+                if (hold.isWaiting()) {
+                    waiting.add(hold);
+                }
+            }
+        }
+        return waiting;
+    }
+
+    // Fails every waiting hold for the book, e.g. when it leaves the catalog
+    void failAll(long isbnKey, Exception cause) {
+        Queue<Hold> queue = queues.remove(isbnKey);
+        if (queue != null) {
+            queue.forEach(hold -> hold.fail(cause));
+        }
+    }
+
+    void failAll(Exception cause) {
+        for (Long isbnKey : new ArrayList<>(queues.keySet())) {
+            failAll(isbnKey, cause);
+        }
+    }
+}
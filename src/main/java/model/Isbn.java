@@ -0,0 +1,212 @@
+package model;
+
+/*
+ * ISBN-10/13 parser, validator and normalizer.
+ *
+ * Every ISBN is reduced to a canonical 64-bit key that Book identity, hashing and the
+ * catalog all use, so hot paths compare longs instead of strings.
+ *
+ * Key layout:
+ *   valid ISBN-10 or ISBN-13   the 13-digit ISBN-13 value itself (ISBN-10 is converted), bit 62 clear
+ *   anything else made of digits (legacy ids such as "123" or a bad checksum)
+ *                              bit 62 set, bit 61 = trailing 'X', bits 56-60 = digit count,
+ *                              bits 0-55 = digits, so up to 16 digits round-trip exactly
+ *   any other string (legacy ids such as "ISBN-001")
+ *                              bit 62 set, bits 56-60 all set, bits 0-55 = hash of the text
+ *
+ * Hyphens and spaces are ignored in ISBNs and digit ids. Other ids are kept exactly as given.
+ * Keys depend on the text alone, so they can be persisted and compared across runs. A text id
+ * key is a hash and cannot be turned back into text; two texts may share one, so whoever
+ * resolves a text key compares the text as well (see isTextKey). Only null is rejected.
+ */
+public final class Isbn {
+
+    private static final long LEGACY_TAG = 1L << 62;
+    private static final long LEGACY_X_FLAG = 1L << 61;
+    private static final int LEGACY_LENGTH_SHIFT = 56;
+    private static final long LEGACY_VALUE_MASK = (1L << LEGACY_LENGTH_SHIFT) - 1;
+    private static final int MAX_LEGACY_DIGITS = 16;
+    // digit count field value marking a hashed text id; digit ids never reach it
+    private static final long TEXT_LENGTH = 0x1F;
+    private static final long TEXT_TAG = LEGACY_TAG | (TEXT_LENGTH << LEGACY_LENGTH_SHIFT);
+    private static final long NOT_DIGITS = -2;
+
+    //private constructor to prevent instantiation
+    private Isbn(){
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    // Returns true if the text is an ISBN-10 or ISBN-13 with a correct check digit
+    public static boolean isValid(String text) {
+        long key = parse(text, false);
+        return key >= 0 && !isLegacyKey(key);
+    }
+
+    // Converts an ISBN to its canonical key, throws IllegalArgumentException for null
+    public static long toKey(String text) {
+        long key = parse(text, true);
+        return key == NOT_DIGITS ? textKey(text) : key;
+    }
+
+    // Key of an ISBN for lookups, or -1 if no book can have it (null)
+    public static long tryToKey(String text) {
+        long key = parse(text, false);
+        return key == NOT_DIGITS ? textKey(text) : key;
+    }
+
+    // Canonical text form: ISBN-13 without separators, digit ids with separators removed,
+    // text ids unchanged
+    public static String normalize(String text) {
+        long key = toKey(text);
+        return isTextKey(key) ? text : fromKey(key);
+    }
+
+    // Inverse of toKey for canonical text; text id keys are hashes and have no inverse
+    public static String fromKey(long key) {
+        if (!isLegacyKey(key)) {
+            return pad(key, 13);
+        }
+        if (isTextKey(key)) {
+            throw new IllegalArgumentException("Text id key " + Long.toHexString(key) + " has no inverse");
+        }
+        int length = (int) ((key >>> LEGACY_LENGTH_SHIFT) & 0x1F);
+        String digits = length == 0 ? "" : pad(key & LEGACY_VALUE_MASK, length);
+        return (key & LEGACY_X_FLAG) != 0 ? digits + "X" : digits;
+    }
+
+    // True for keys of strings that were not valid ISBNs
+    public static boolean isLegacyKey(long key) {
+        return (key & LEGACY_TAG) != 0;
+    }
+
+    // True for hashed text id keys, which two different texts may share
+    public static boolean isTextKey(long key) {
+        return key >= 0 && (key & TEXT_TAG) == TEXT_TAG;
+    }
+
+    // Key range [from, to) covering every ISBN-13 that starts with the given digits,
+    // or null if the prefix is not made of up to 13 digits (separators ignored)
+    static long[] prefixRange(String prefix) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > 13) {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        long scale = 1;
+        for (int i = digits; i < 13; i++) {
+            scale *= 10;
+        }
+        return new long[] { value * scale, (value + 1) * scale };
+    }
+
+    // Key of a text id: 64-bit FNV-1a of the text, folded into the 56 value bits. Archives
+    // store these keys, so the hash must never change.
+    private static long textKey(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return TEXT_TAG | ((hash ^ (hash >>> 56)) & LEGACY_VALUE_MASK);
+    }
+
+    // Single pass over the text without allocating. Returns NOT_DIGITS for text that is not
+    // an ISBN or digit id.
+    private static long parse(String text, boolean throwOnError) {
+        if (text == null) {
+            return fail(text, throwOnError);
+        }
+        long value = 0;
+        int digits = 0;
+        boolean trailingX = false;
+        // weighted sums for both checksums, computed on the fly
+        int sum10 = 0;
+        int sum13 = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (trailingX) {
+                // nothing may follow the X
+                return NOT_DIGITS;
+            }
+            if (c == 'X' || c == 'x') {
+                if (digits == 0) {
+                    return NOT_DIGITS;
+                }
+                trailingX = true;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > MAX_LEGACY_DIGITS) {
+                return NOT_DIGITS;
+            }
+            int d = c - '0';
+            value = value * 10 + d;
+            sum10 += (11 - digits) * d;
+            sum13 += (digits % 2 == 1) ? d : 3 * d;
+        }
+        if (digits == 0) {
+            return NOT_DIGITS;
+        }
+
+        if (!trailingX && digits == 13 && sum13 % 10 == 0 && isBookland(value)) {
+            return value;
+        }
+        if (digits == 10 && !trailingX && sum10 % 11 == 0) {
+            return isbn10To13(value / 10);
+        }
+        if (digits == 9 && trailingX && (sum10 + 10) % 11 == 0) {
+            return isbn10To13(value);
+        }
+        return LEGACY_TAG | (trailingX ? LEGACY_X_FLAG : 0)
+            | ((long) digits << LEGACY_LENGTH_SHIFT) | value;
+    }
+
+    // ISBN-13 values always start with the 978 or 979 "Bookland" prefix
+    private static boolean isBookland(long value) {
+        long prefix = value / 10_000_000_000L;
+        return prefix == 978 || prefix == 979;
+    }
+
+    // Prefix the first nine ISBN-10 digits with 978 and recompute the check digit
+    private static long isbn10To13(long firstNine) {
+        long body = 978_000_000_000L + firstNine;
+        int sum = 0;
+        long rest = body;
+        // body has 12 digits; the rightmost one gets weight 3
+        for (int position = 12; position >= 1; position--) {
+            int d = (int) (rest % 10);
+            rest /= 10;
+            sum += (position % 2 == 1) ? d : 3 * d;
+        }
+        int check = (10 - sum % 10) % 10;
+        return body * 10 + check;
+    }
+
+    private static String pad(long value, int width) {
+        String digits = Long.toString(value);
+        if (digits.length() >= width) {
+            return digits;
+        }
+        StringBuilder padded = new StringBuilder(width);
+        for (int i = digits.length(); i < width; i++) {
+            padded.append('0');
+        }
+        return padded.append(digits).toString();
+    }
+
+    private static long fail(String text, boolean throwOnError) {
+        if (throwOnError) {
+            throw new IllegalArgumentException("Invalid ISBN: " + text);
+        }
+        return -1;
+    }
+}
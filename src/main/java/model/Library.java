@@ -2,9 +2,19 @@ package model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import exception.BookAlreadyExistsException;
 import exception.BookNotFoundException;
 import exception.BookNotAvailableException;
@@ -17,66 +27,104 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 public class Library implements Serializable {
 
     // Attributes
-    @JsonProperty("books")
-    private final List<Book> books;
+    // Catalog keyed by the canonical ISBN key (see Isbn), which also makes it the ordered ISBN index.
+    // Readers iterate it without locking (weakly consistent), writers are serialized by synchronizing on the library.
+    @JsonIgnore
+    private final ConcurrentNavigableMap<Long, Book> catalog;
+    // Hash index over the same books for exact ISBN lookups
+    @JsonIgnore
+    private final BookTable isbnTable;
+    // Secondary indexes: publication year, sorted for range scans; title, author and genre,
+    // hashed by interned value for exact matches
+    @JsonIgnore
+    private final SortedBookIndex<Integer> yearIndex;
+    @JsonIgnore
+    private final StringBookIndex titleIndex;
+    @JsonIgnore
+    private final StringBookIndex authorIndex;
+    @JsonIgnore
+    private final StringBookIndex genreIndex;
+    @JsonIgnore
+    private final QueryPlanner planner;
+    // Cache in front of findBookByTitle/Author/Genre
+    @JsonIgnore
+    private volatile SearchCache searchCache;
+    // Change feed for subscribers such as caches, indexes and exports
+    @JsonIgnore
+    private final LibraryEventPublisher events;
+    // ConcurrentSkipListMap.size() walks the whole map, so the count is kept here
+    @JsonIgnore
+    private volatile int bookCount;
     @JsonProperty("borrowerMap")
     private Map<String, List<Book>> borrowedBooks;
-    static final int MAX_BORROW_LIMIT = 6;
+    // Borrower ids, tiers and loan counters; saved separately from the library
+    @JsonIgnore
+    private volatile BorrowerRegistry borrowers;
+    // Borrowers waiting for books that are out, served in order by returnBook
+    @JsonIgnore
+    private final HoldQueues holds;
+    static final int DEFAULT_SEARCH_CACHE_SIZE = 1024;
 
     // Constructor
     @JsonCreator
     public Library() {
-        this.books = new ArrayList<>();
+        this.catalog = new ConcurrentSkipListMap<>();
+        this.isbnTable = new BookTable();
+        this.yearIndex = new SortedBookIndex<>();
+        this.titleIndex = new StringBookIndex();
+        this.authorIndex = new StringBookIndex();
+        this.genreIndex = new StringBookIndex();
+        this.planner = new QueryPlanner(catalog, this::getTotalBookCount,
+            titleIndex, authorIndex, genreIndex, yearIndex);
+        this.searchCache = new SearchCache(SearchCache.Policy.LRU, DEFAULT_SEARCH_CACHE_SIZE);
+        this.events = new LibraryEventPublisher();
         this.borrowedBooks = new HashMap<>();
+        this.borrowers = new BorrowerRegistry();
+        this.holds = new HoldQueues();
     }
 
     /////////////////////////////////////Add a book to the library////////////////////////////////////
 
     // Add a book to the library
-    public void addBook(Book book) throws BookAlreadyExistsException {
+    public synchronized void addBook(Book book) throws BookAlreadyExistsException {
         // Check for duplicate ISBN
-        boolean duplicate = books.stream()
-            .anyMatch(b -> b.getISBN().equals(book.getISBN()));
-        
-        if(duplicate) {
+        if(catalog.putIfAbsent(book.getIsbnKey(), book) != null) {
             throw new BookAlreadyExistsException("Book with same ISBN already exists in the library.");
         }
-        
-        books.add(book);
+        index(book);
         book.setIsAvailable(true);
+        events.publish(LibraryEvent.Type.BOOK_ADDED, book, null);
     }
 
     /////////////////////////////////////Add a list of books to the library//////////////////////////////////// 
 
-    public void addBooks(List<Book> books) throws BookAlreadyExistsException {
+    public synchronized void addBooks(List<Book> books) throws BookAlreadyExistsException {
         // First check for duplicates in the input list
+        Set<Long> seen = new HashSet<>();
         for(Book book : books) {
-            boolean duplicateInInput = books.stream()
-                .filter(b -> b != book) // Don't compare with itself
-                .anyMatch(b -> b.getISBN().equals(book.getISBN()));
-            if(duplicateInInput) {
+            if(!seen.add(book.getIsbnKey())) {
                 throw new BookAlreadyExistsException(book + ": Book with same ISBN found in the input list.");
             }
             
             // Check against existing books in library
-            boolean duplicateInLibrary = this.books.stream()
-                .anyMatch(b -> b.getISBN().equals(book.getISBN()));
-            if(duplicateInLibrary) {
+            if(isbnTable.get(book.getIsbnKey()) != null) {
                 throw new BookAlreadyExistsException(book + ": Book with same ISBN already exists in the library.");
             }
         }
         
         // If no duplicates found, add all books
         for(Book book : books) {
-            this.books.add(book);
+            catalog.put(book.getIsbnKey(), book);
+            index(book);
             book.setIsAvailable(true);
+            events.publish(LibraryEvent.Type.BOOK_ADDED, book, null);
         }
     }
 
     /////////////////////////////////////Remove a book from the library////////////////////////////////////
 
     // Remove a book from the library
-    public void removeBook(String isbn) throws BookNotFoundException {
+    public synchronized void removeBook(String isbn) throws BookNotFoundException {
         // find book in library
         Book book = findBookByISBN(isbn);
         // check if the book is available
@@ -84,7 +132,11 @@ public class Library implements Serializable {
             throw new BookNotFoundException("Book not found in the library.");
         }
         // remove the book from the library
-        books.remove(book);
+        catalog.remove(book.getIsbnKey());
+        unindex(book);
+        events.publish(LibraryEvent.Type.BOOK_REMOVED, book, null);
+        // normally empty, since a returned book goes to the first waiting hold
+        holds.failAll(book.getIsbnKey(), new BookNotFoundException("Book was removed from the library."));
         // update the book availability
         // book.setIsAvailable(false);
     }
@@ -94,11 +146,12 @@ public class Library implements Serializable {
     // Search Methods
     // Find book by ISBN
     public Book findBookByISBN(String isbn) throws BookNotFoundException {
-        // iterate the list of books and check if the ISBN matches
-        for(Book book : books){
-            if(book.getISBN().equals(isbn)){
-                return book;
-            }
+        // every book is hashed by its normalized ISBN key, so this is a single probe
+        long key = Isbn.tryToKey(isbn);
+        Book book = key < 0 ? null : isbnTable.get(key);
+        // two text ids may share a key, so those also compare the text
+        if(book != null && (!Isbn.isTextKey(key) || book.getISBN().equals(isbn))){
+            return book;
         }
         // if no book is found, throw an exception
         throw new BookNotFoundException("Book not found in the library.");
@@ -106,77 +159,174 @@ public class Library implements Serializable {
 
     // Find book by title
     public Book findBookByTitle(String title) throws BookNotFoundException {
-        // iterate the list of books and check if the title matches
-        for(Book book: books){
-            if(book.getTitle().equals(title)){
-                return book;
-            }
-        }
-        // if no book is found, throw an exception
-        throw new BookNotFoundException("Book not found in the library.");
+        return findFirst(SearchCache.Field.TITLE, titleIndex, title);
     }
 
     // Find book by author
     public Book findBookByAuthor(String author) throws BookNotFoundException {
-        // iterate the list of books and check if the author matches
-        for(Book book: books){
-            if(book.getAuthor().equals(author)){
-                return book;
-            }
-        }
-        // if no book is found, throw an exception
-        throw new BookNotFoundException("Book not found in the library.");
+        return findFirst(SearchCache.Field.AUTHOR, authorIndex, author);
     }
 
     // Find book by genre
     public Book findBookByGenre(String genre) throws BookNotFoundException {
-        // iterate the list of books and check if the genre matches
-        for(Book book: books){
-            if(book.getGenre().equals(genre)){
-                return book;
+        return findFirst(SearchCache.Field.GENRE, genreIndex, genre);
+    }
+
+    // Returns the matching book with the lowest ISBN, the same book a scan of the catalog would find first.
+    // Answers come from the search cache when possible, otherwise from the index bucket.
+    private Book findFirst(SearchCache.Field field, StringBookIndex index, String value)
+        throws BookNotFoundException {
+        if(value != null){
+            SearchCache cache = searchCache;
+            if(cache == null){
+                Book first = index.first(value);
+                if(first != null){
+                    return first;
+                }
+            }else{
+                // the stamp must be taken before reading the index, see SearchCache.put
+                long stamp = cache.stamp(field, value);
+                Object cached = cache.get(field, value);
+                if(cached == null){
+                    cached = index.first(value);
+                    cache.put(field, value, (Book) cached, stamp);
+                }
+                if(cached != null && !SearchCache.isNotFound(cached)){
+                    return (Book) cached;
+                }
             }
         }
         // if no book is found, throw an exception
         throw new BookNotFoundException("Book not found in the library.");
     }
 
+    /////////////////////////////////////Change events//////////////////////////////////// 
+
+    // Feed of every add, remove, borrow and return, delivered to subscribers in batches
+    public LibraryEventPublisher events(){
+        return events;
+    }
+
+    /////////////////////////////////////Search cache//////////////////////////////////// 
+
+    // Replace the search cache, e.g. new SearchCache(SearchCache.Policy.W_TINY_LFU, 10_000), or null to turn it off
+    @JsonIgnore
+    public void setSearchCache(SearchCache searchCache){
+        this.searchCache = searchCache;
+    }
+
+    // Hit/miss statistics of the search cache, or null when it is turned off
+    @JsonIgnore
+    public SearchCache.Stats getSearchCacheStats(){
+        SearchCache cache = searchCache;
+        return cache == null ? null : cache.stats();
+    }
+
     /*  
 
     //////////////////////////////////Borrowing books system//////////////////////////////////
 
     */
-    public void borrowBook(String title, String borrowerName) 
+    public synchronized void borrowBook(String title, String borrowerName) 
         throws BookNotFoundException, BookNotAvailableException, BorrowLimitExceededException {
         // find the book by isbn
         Book book = findBookByTitle(title);
         if(!book.isAvailable()){
             throw new BookNotAvailableException("Book is not available.");
         }
-        // Check if the borrower is already in the borrowedbooks Map
-        if(borrowedBooks.containsKey(borrowerName)){
-            // borrowedBooks.get(borrowerName) is the list of books borrowed by the borrower
-            if(borrowedBooks.get(borrowerName).size() >= MAX_BORROW_LIMIT){
-                throw new BorrowLimitExceededException("Borrower has reached the maximum borrow limit.");
-            }
-        }
-        // check if the borrower has a list of borrowed books
-        List<Book> booksBorrowed = borrowedBooks.get(borrowerName);
-        if(booksBorrowed == null){
-            booksBorrowed = new ArrayList<>();
+        // take a loan against the borrower's tier limit, registering new borrowers on the way
+        Borrower borrower = borrowers.register(borrowerName);
+        if(!borrower.tryAcquireLoan()){
+            throw new BorrowLimitExceededException("Borrower has reached the maximum borrow limit of "
+                + borrower.getTier().getLoanLimit() + " books.");
         }
+        lend(book, borrowerName);
+    }
+
+    // Record the loan once the limit check has passed, called with the library lock held
+    private void lend(Book book, String borrowerName) {
         // Add the book to the borrower's list of borrowed books
-        booksBorrowed.add(book);
-        // update the borrowedBooks Map
-        borrowedBooks.put(borrowerName,booksBorrowed);
+        borrowedBooks.computeIfAbsent(borrowerName, name -> new ArrayList<>()).add(book);
          
         // update the book availability
         book.setIsAvailable(false);
+        events.publish(LibraryEvent.Type.BOOK_BORROWED, book, borrowerName);
+    }
+
+    /////////////////////////////////////Holds on borrowed books//////////////////////////////////// 
+
+    // Queue for a book instead of polling borrowBook. If the book is on the shelf it is lent
+    // right away and the returned hold is already complete; otherwise the hold waits until
+    // returnBook hands the book over. Exceptions are those of borrowBook for an available book,
+    // plus BookNotAvailableException if the borrower already has the book or is already waiting for it.
+    public synchronized Hold placeHold(String title, String borrowerName)
+        throws BookNotFoundException, BookNotAvailableException, BorrowLimitExceededException {
+        Book book = findBookByTitle(title);
+        List<Book> onLoan = borrowedBooks.get(borrowerName);
+        if(onLoan != null && onLoan.contains(book)){
+            throw new BookNotAvailableException(borrowerName + " already has this book.");
+        }
+        for(Hold waiting : holds.waiting(book.getIsbnKey())){
+            if(waiting.getBorrowerName().equals(borrowerName)){
+                throw new BookNotAvailableException(borrowerName + " is already waiting for this book.");
+            }
+        }
+        if(!book.isAvailable()){
+            return holds.add(book, borrowerName);
+        }
+        try {
+            borrowBook(title, borrowerName);
+        } catch (BookNotAvailableException e) {
+            // cannot happen, availability was checked under the same lock
+            throw new IllegalStateException(e);
+        }
+        Hold hold = new Hold(book, borrowerName);
+        hold.claim();
+        hold.fulfil();
+        return hold;
+    }
+
+    // Holds waiting for the book, first in line first
+    public List<Hold> holdsFor(String title) throws BookNotFoundException {
+        return holds.waiting(findBookByTitle(title).getIsbnKey());
+    }
+
+    // Lend a returned book to the first waiting hold whose borrower still has a loan left.
+    // If nobody is waiting the book stays on the shelf.
+    private void handOff(Book book) {
+        Hold hold;
+        while((hold = holds.next(book.getIsbnKey())) != null){
+            Borrower borrower = borrowers.register(hold.getBorrowerName());
+            if(!borrower.tryAcquireLoan()){
+                hold.fail(new BorrowLimitExceededException("Borrower has reached the maximum borrow limit of "
+                    + borrower.getTier().getLoanLimit() + " books."));
+                continue;
+            }
+            lend(book, hold.getBorrowerName());
+            hold.fulfil();
+            return;
+        }
+    }
+
+    /////////////////////////////////////Borrowers//////////////////////////////////// 
+
+    // Registry of borrowers, their tiers and loan counts
+    public BorrowerRegistry borrowers(){
+        return borrowers;
+    }
+
+    // Swap in a registry loaded with util.FileUtils.loadBorrowersFromFile. Its loan counters
+    // are set from the current borrower map, and borrowers it does not know are added.
+    @JsonIgnore
+    public synchronized void setBorrowerRegistry(BorrowerRegistry registry){
+        registry.resetLoans(borrowedBooks);
+        this.borrowers = registry;
     }
 
     /////////////////////////////////////Returning books system//////////////////////////////////// 
 
     // Returning books System
-    public void returnBook(String title, String borrowerName) 
+    public synchronized void returnBook(String title, String borrowerName) 
         throws BookNotFoundException, BookNotBorrowedException {
         // Find the book by title
         Book book = findBookByTitle(title);
@@ -201,6 +351,10 @@ public class Library implements Serializable {
         
         // Remove the book from the borrower's list
         booksBorrowed.remove(book);
+        Borrower borrower = borrowers.find(borrowerName);
+        if(borrower != null){
+            borrower.releaseLoan();
+        }
         
         // Update the book availability
         book.setIsAvailable(true);
@@ -209,6 +363,8 @@ public class Library implements Serializable {
         if(booksBorrowed.isEmpty()){
             borrowedBooks.remove(borrowerName);
         }
+        events.publish(LibraryEvent.Type.BOOK_RETURNED, book, borrowerName);
+        handOff(book);
     }
 
     /////////////////////////////////////Get all available books in the library//////////////////////////////////// 
@@ -216,30 +372,97 @@ public class Library implements Serializable {
     // Utility methods
     // Get all available books in the library
     public List<Book> getAllAvailableBooks(){
-        // iterate the list of books and check if they are available
-        List<Book> availableBooks = new ArrayList<>();
-        for(Book book: books){
-            if(book.isAvailable()){
-                availableBooks.add(book);
-            }
-        }
-        return availableBooks;
+        return streamBooks(BookFilter.all().available()).collect(Collectors.toList());
     }
 
     // Get all books in the library
     public List<Book> getAllBooks(){
-        List<Book> allBooks = new ArrayList<>();
-        for(Book book: books){
-            allBooks.add(book);
+        return new ArrayList<>(catalog.values());
+    }
+
+    /////////////////////////////////////Lazy and paged views of the catalog//////////////////////////////////// 
+
+    // Lazy stream over the catalog in ISBN order. Nothing is copied; the stream is weakly
+    // consistent, so it never throws ConcurrentModificationException and sees each book at most once.
+    public Stream<Book> streamBooks(){
+        return catalog.values().stream();
+    }
+
+    // Lazy stream over the books matching the filter
+    public Stream<Book> streamBooks(BookFilter filter){
+        return streamBooks().filter(filter);
+    }
+
+    // Lazy iterator over the books matching the filter
+    public Iterator<Book> iterateBooks(BookFilter filter){
+        return streamBooks(filter).iterator();
+    }
+
+    // Get one page of books matching the filter.
+    // cursor is null for the first page, otherwise the cursor returned with the previous page.
+    // Paging by ISBN keeps pages stable while books are added or removed concurrently:
+    // a book present for the whole walk is returned exactly once.
+    public BookPage pageBooks(BookFilter filter, String cursor, int pageSize){
+        if(pageSize <= 0){
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        NavigableMap<Long, Book> remaining = cursor == null ? catalog : catalog.tailMap(Isbn.tryToKey(cursor), false);
+        Iterator<Book> it = remaining.values().stream().filter(filter).iterator();
+
+        List<Book> page = new ArrayList<>(Math.min(pageSize, 256));
+        while(page.size() < pageSize && it.hasNext()){
+            page.add(it.next());
+        }
+        // only hand out a cursor if at least one more matching book exists
+        String nextCursor = it.hasNext() ? page.get(page.size() - 1).getISBN() : null;
+        return new BookPage(page, nextCursor);
+    }
+
+    /////////////////////////////////////Range and prefix scans over the sorted indexes//////////////////////////////////// 
+
+    // Books published between the two years (both inclusive), ordered by year then ISBN
+    public Stream<Book> streamBooksPublishedBetween(int fromYear, int toYear){
+        return yearIndex.range(fromYear, toYear);
+    }
+
+    // Every book ordered by publication year
+    public Stream<Book> streamBooksByPublishedYear(){
+        return yearIndex.ordered();
+    }
+
+    // Books whose ISBN-13 starts with the given prefix, e.g. "978-0-13" for one publisher.
+    // Separators are ignored. Legacy ids that are not valid ISBNs never match a prefix.
+    public Stream<Book> streamBooksByIsbnPrefix(String prefix){
+        long[] range = Isbn.prefixRange(prefix);
+        if(range == null){
+            return Stream.empty();
         }
-        return allBooks;
+        return catalog.subMap(range[0], true, range[1], false).values().stream();
+    }
+
+    // Every book ordered by ISBN-13, legacy ids last
+    public Stream<Book> streamBooksByIsbn(){
+        return streamBooks();
+    }
+
+    /////////////////////////////////////Multi-field queries//////////////////////////////////// 
+
+    // Run a combined query, e.g. author + genre + available + year range. Results are in ISBN order.
+    public List<Book> query(BookQuery query){
+        return planner.plan(query).execute();
+    }
+
+    // Show which indexes a query would use without running it
+    public QueryPlan explain(BookQuery query){
+        return planner.plan(query);
     }
 
     /////////////////////////////////////Get all borrowed books in the library//////////////////////////////////// 
 
     // Get all borrowed books in the library
-    @JsonProperty("borrowedBooksList")
-    public List<Book> getAllBorrowedBooks() {
+    // derived from borrowerMap, so written for readers of the file but ignored when loading
+    @JsonProperty(value = "borrowedBooksList", access = JsonProperty.Access.READ_ONLY)
+    public synchronized List<Book> getAllBorrowedBooks() {
         List<Book> allBorrowed = new ArrayList<>();
         for (List<Book> books : borrowedBooks.values()) {
             allBorrowed.addAll(books);
@@ -250,8 +473,8 @@ public class Library implements Serializable {
     /////////////////////////////////////Get all borrowers in the library and a list of books they have borrowed//////////////////////////////////// 
 
     // Get all borrowers in the library and a list of books they have borrowed
-    @JsonProperty("borrowerReport")
-    public Map<String, List<Book>> getBorrowerReport() {
+    @JsonProperty(value = "borrowerReport", access = JsonProperty.Access.READ_ONLY)
+    public synchronized Map<String, List<Book>> getBorrowerReport() {
         return new HashMap<>(borrowedBooks);
     }
 
@@ -260,7 +483,7 @@ public class Library implements Serializable {
     // Get the total number of books in the library
     @JsonIgnore
     public int getTotalBookCount(){
-        return books.size();
+        return bookCount;
     }
 
     /////////////////////////////////////Get the number of borrowed books in the library//////////////////////////////////// 
@@ -275,11 +498,109 @@ public class Library implements Serializable {
 
     // Get the number of borrowers in the library
     @JsonIgnore
-    public int getNumberOfBorrowers() {
+    public synchronized int getNumberOfBorrowers() {
         return borrowedBooks.size();
     }
 
+    @JsonProperty("books")
     public List<Book> getBooks() {
-        return new ArrayList<>(books);
+        return new ArrayList<>(catalog.values());
+    }
+
+    // Used by Jackson when loading a saved library; availability is kept as saved
+    @JsonProperty("books")
+    private synchronized void setBooks(List<Book> books) {
+        rebuild(books.toArray(new Book[0]));
+    }
+
+    // Bulk load used by util.SnapshotLoader: replaces the catalog and borrower map and builds
+    // every index once, instead of updating them book by book. Availability is kept as given.
+    public synchronized void loadSnapshot(Book[] books, Map<String, List<Book>> borrowerMap) {
+        rebuild(books);
+        Map<String, List<Book>> loans = new HashMap<>(borrowerMap.size() * 2);
+        for(Map.Entry<String, List<Book>> entry : borrowerMap.entrySet()){
+            // point the borrower lists at the catalog's own Book objects
+            List<Book> borrowed = new ArrayList<>(entry.getValue().size());
+            for(Book book : entry.getValue()){
+                Book inCatalog = isbnTable.get(book.getIsbnKey());
+                borrowed.add(inCatalog != null ? inCatalog : book);
+            }
+            loans.put(entry.getKey(), borrowed);
+        }
+        this.borrowedBooks = loans;
+        this.borrowers.resetLoans(loans);
+    }
+
+    // Used by Jackson when loading a saved library, so the loan counters match the saved loans
+    @JsonProperty("borrowerMap")
+    private synchronized void setBorrowerMap(Map<String, List<Book>> borrowerMap) {
+        this.borrowedBooks = borrowerMap;
+        this.borrowers.resetLoans(borrowerMap);
+    }
+
+    private void rebuild(Book[] books) {
+        // stable sort, so among books with the same ISBN the first record still wins
+        Book[] sorted = books.clone();
+        Arrays.parallelSort(sorted, Comparator.comparingLong(Book::getIsbnKey));
+        int unique = 0;
+        for(int i = 0; i < sorted.length; i++){
+            if(unique == 0 || sorted[unique - 1].getIsbnKey() != sorted[i].getIsbnKey()){
+                sorted[unique++] = sorted[i];
+            }
+        }
+        Book[] catalogBooks = Arrays.copyOf(sorted, unique);
+
+        catalog.clear();
+        yearIndex.clear();
+        titleIndex.clear();
+        authorIndex.clear();
+        genreIndex.clear();
+        // the catalog and each index are separate structures with a single writer each,
+        // so they are filled side by side
+        Stream.<Runnable>of(
+            () -> Arrays.stream(catalogBooks).parallel().forEach(book -> catalog.put(book.getIsbnKey(), book)),
+            () -> isbnTable.load(catalogBooks),
+            () -> { for(Book book : catalogBooks) yearIndex.add(book.getPublishedYear(), book); },
+            () -> { for(Book book : catalogBooks) titleIndex.add(book.getTitle(), book); },
+            () -> { for(Book book : catalogBooks) authorIndex.add(book.getAuthor(), book); },
+            () -> { for(Book book : catalogBooks) genreIndex.add(book.getGenre(), book); }
+        ).parallel().forEach(Runnable::run);
+        bookCount = unique;
+
+        // holds refer to the old Book objects
+        holds.failAll(new BookNotFoundException("The library catalog was reloaded."));
+        // every cached answer may be wrong now
+        SearchCache cache = searchCache;
+        if(cache != null){
+            cache.invalidateAll();
+        }
+    }
+
+    // Keep the count and secondary indexes in step with the catalog, called with the library lock held
+    private void index(Book book) {
+        bookCount++;
+        isbnTable.add(book);
+        yearIndex.add(book.getPublishedYear(), book);
+        titleIndex.add(book.getTitle(), book);
+        authorIndex.add(book.getAuthor(), book);
+        genreIndex.add(book.getGenre(), book);
+        // only after the indexes are updated, so a racing search cannot cache the old answer
+        SearchCache cache = searchCache;
+        if(cache != null){
+            cache.bookAdded(book);
+        }
+    }
+
+    private void unindex(Book book) {
+        bookCount--;
+        isbnTable.remove(book);
+        yearIndex.remove(book.getPublishedYear(), book);
+        titleIndex.remove(book.getTitle(), book);
+        authorIndex.remove(book.getAuthor(), book);
+        genreIndex.remove(book.getGenre(), book);
+        SearchCache cache = searchCache;
+        if(cache != null){
+            cache.bookRemoved(book);
+        }
     }
 }
\ No newline at end of file
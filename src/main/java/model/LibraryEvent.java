@@ -0,0 +1,52 @@
+package model;
+
+/*
+ * One change to a Library, as delivered to event subscribers.
+ * Sequence numbers are assigned in publication order and have no gaps.
+ */
+public final class LibraryEvent {
+
+    public enum Type { BOOK_ADDED, BOOK_REMOVED, BOOK_BORROWED, BOOK_RETURNED }
+
+    private final long sequence;
+    private final Type type;
+    private final Book book;
+    // null for BOOK_ADDED and BOOK_REMOVED
+    private final String borrowerName;
+    private final long timestamp;
+
+    LibraryEvent(long sequence, Type type, Book book, String borrowerName, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.book = book;
+        this.borrowerName = borrowerName;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public String getBorrowerName() {
+        return borrowerName;
+    }
+
+    // Wall clock time of the change in milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryEvent{" + "sequence=" + sequence + ", type=" + type + ", ISBN=" + book.getISBN()
+        + (borrowerName == null ? "" : ", borrower=" + borrowerName) + "}";
+    }
+}
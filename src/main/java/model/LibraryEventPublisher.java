@@ -0,0 +1,298 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import exception.EventOverrunException;
+
+/*
+ * In-process change feed of a Library, obtained through Library.events().
+ *
+ * Events go into a fixed-size ring buffer. Publishing claims a sequence number with one atomic
+ * increment and writes the slot. Each event carries its own sequence, so a reader can tell from
+ * the slot alone whether it is not written yet or has already been overwritten.
+ *
+ * Subscribers follow java.util.concurrent.Flow: request(n) asks for n more batches, and each
+ * onNext delivers up to maxBatchSize events in order. Delivery runs on the publisher's executor,
+ * or one given at subscribe time for subscribers that block, one drain task at a time per
+ * subscriber, so callbacks are never concurrent. A subscriber whose onSubscribe or onNext throws
+ * is cancelled and gets the exception in onError.
+ *
+ * What happens when a subscriber falls a full ring behind is chosen per subscription:
+ *   FAIL   publishing never waits; the subscriber gets onError(EventOverrunException) and must
+ *          resync from the catalog. For caches and other consumers that can rebuild their state.
+ *   BLOCK  publishing waits until the subscriber has taken the oldest event out of the ring, so
+ *          the subscriber sees every event. Demand is credit: a BLOCK subscriber that stops
+ *          requesting stops every publisher once the ring is full. For durable consumers such
+ *          as archive.LibraryArchiver. Library publishes while holding its lock, so the
+ *          callbacks of a BLOCK subscriber must never wait for that lock.
+ * New subscribers start at the next event published after they subscribe.
+ */
+public final class LibraryEventPublisher implements Flow.Publisher<List<LibraryEvent>> {
+
+    static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final AtomicReferenceArray<LibraryEvent> ring;
+    private final int mask;
+    // next sequence number to hand out
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Executor executor;
+    private final List<RingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    // BLOCK publishers wait on this monitor for a subscriber to free ring slots
+    private final Object space = new Object();
+    private volatile int waitingPublishers;
+
+    // What a subscription does when it falls a full ring behind, see the class comment
+    public enum Overflow { FAIL, BLOCK }
+
+    LibraryEventPublisher() {
+        this(DEFAULT_CAPACITY, ForkJoinPool.commonPool());
+    }
+
+    LibraryEventPublisher(int capacity, Executor executor) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    // Subscribe with the default batch size
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber) {
+        subscribe(subscriber, DEFAULT_BATCH_SIZE);
+    }
+
+    // Subscribe receiving at most maxBatchSize events per onNext
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber, int maxBatchSize) {
+        subscribe(subscriber, maxBatchSize, executor);
+    }
+
+    // Subscribe with deliveries running on the given executor instead of the publisher's, for
+    // subscribers that block (e.g. on I/O) and must not tie up a shared pool
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber, int maxBatchSize, Executor executor) {
+        subscribe(subscriber, maxBatchSize, executor, Overflow.FAIL);
+    }
+
+    // Subscribe with the given overflow policy; BLOCK makes delivery lossless
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber, int maxBatchSize,
+                          Executor executor, Overflow overflow) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(overflow, "overflow");
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        RingSubscription subscription = new RingSubscription(subscriber, maxBatchSize, executor, overflow,
+            nextSequence.get());
+        subscriptions.add(subscription);
+        // onSubscribe is delivered by the drain task so it is serialized with onNext
+        subscription.signal();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // Sequence number the next event will get
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    // Called by Library after each change. Free when nobody is subscribed; waits only while a
+    // BLOCK subscriber still needs the slot this event goes into.
+    void publish(LibraryEvent.Type type, Book book, String borrowerName) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        for (RingSubscription subscription : subscriptions) {
+            if (subscription.overflow == Overflow.BLOCK) {
+                awaitSpace(subscription, sequence);
+            }
+        }
+        ring.set((int) sequence & mask, new LibraryEvent(sequence, type, book, borrowerName, System.currentTimeMillis()));
+        for (RingSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    // Waits until the subscriber has taken the event `sequence` replaces out of the ring. The
+    // event is never dropped, so an interrupt is only passed on once the wait is over.
+    private void awaitSpace(RingSubscription subscription, long sequence) {
+        if (subscription.hasRoomFor(sequence)) {
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (space) {
+            waitingPublishers++;
+            try {
+                while (!subscription.hasRoomFor(sequence)) {
+                    try {
+                        space.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                waitingPublishers--;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Wakes publishers waiting in awaitSpace; cheap when none are
+    private void spaceFreed() {
+        if (waitingPublishers > 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+
+    private final class RingSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<LibraryEvent>> subscriber;
+        private final int maxBatchSize;
+        private final Executor executor;
+        private final Overflow overflow;
+        private final AtomicLong requested = new AtomicLong();
+        // work-in-progress counter: only the caller that moves it off zero schedules a drain
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+        private boolean subscribed;
+        // next sequence to deliver, only written by the drain task
+        private volatile long cursor;
+
+        RingSubscription(Flow.Subscriber<? super List<LibraryEvent>> subscriber, int maxBatchSize,
+                         Executor executor, Overflow overflow, long start) {
+            this.subscriber = subscriber;
+            this.maxBatchSize = maxBatchSize;
+            this.executor = executor;
+            this.overflow = overflow;
+            this.cursor = start;
+        }
+
+        // True once writing `sequence` can no longer overwrite an event this subscriber still needs
+        boolean hasRoomFor(long sequence) {
+            return cancelled || sequence - cursor < ring.length();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                requested.accumulateAndGet(n, (current, add) -> {
+                    long sum = current + add;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            if (overflow == Overflow.BLOCK) {
+                spaceFreed();
+            }
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                try {
+                    if (!subscribed) {
+                        subscribed = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    drain();
+                } catch (Throwable e) {
+                    // a broken subscriber must not keep wip raised or stay subscribed
+                    if (!cancelled) {
+                        fail(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (!cancelled) {
+                if (badRequest != null) {
+                    fail(badRequest);
+                    return;
+                }
+                if (requested.get() == 0) {
+                    return;
+                }
+                long published = nextSequence.get();
+                if (cursor >= published) {
+                    return;
+                }
+                if (overflow == Overflow.FAIL && published - cursor > ring.length()) {
+                    fail(new EventOverrunException("Subscriber fell " + (published - cursor)
+                        + " events behind, more than the ring holds."));
+                    return;
+                }
+
+                int size = (int) Math.min(maxBatchSize, published - cursor);
+                List<LibraryEvent> batch = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    long sequence = cursor + i;
+                    LibraryEvent event = ring.get((int) sequence & mask);
+                    if (event == null || event.getSequence() < sequence) {
+                        // claimed but not written yet; its publisher will signal again
+                        break;
+                    }
+                    if (event.getSequence() > sequence) {
+                        fail(new EventOverrunException("Event " + sequence + " was overwritten before delivery."));
+                        return;
+                    }
+                    batch.add(event);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                cursor += batch.size();
+                if (overflow == Overflow.BLOCK) {
+                    // the batch holds its own references, so its slots are free already
+                    spaceFreed();
+                }
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                subscriber.onNext(batch);
+            }
+        }
+
+        private void fail(Throwable error) {
+            cancel();
+            try {
+                subscriber.onError(error);
+            } catch (Throwable ignored) {
+                // nothing left to tell a subscriber whose onError throws
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ * Execution plan chosen by QueryPlanner for one BookQuery.
+ *
+ * A plan is either a scan of the whole catalog, or a driving index lookup optionally
+ * intersected with other indexes as sorted ISBN-key lists before any book is fetched.
+ * The full query is always re-checked on each candidate, so the result is exact even
+ * when books change while the plan runs.
+ */
+public final class QueryPlan {
+
+    /*
+     * One way of producing candidate books from an index, in ISBN-key order
+     */
+    abstract static class AccessPath {
+        private final String description;
+        private final long estimatedRows;
+
+        AccessPath(String description, long estimatedRows) {
+            this.description = description;
+            this.estimatedRows = estimatedRows;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        // Candidate books in ascending ISBN-key order
+        abstract Iterator<Book> books();
+
+        // Candidate ISBN keys, sorted ascending
+        abstract long[] keys();
+    }
+
+    private final BookQuery query;
+    private final Map<Long, Book> catalog;
+    private final AccessPath driver;
+    private final List<AccessPath> intersections;
+    private final boolean parallelScan;
+    private final int catalogSize;
+
+    QueryPlan(BookQuery query, Map<Long, Book> catalog, AccessPath driver,
+              List<AccessPath> intersections, boolean parallelScan, int catalogSize) {
+        this.query = query;
+        this.catalog = catalog;
+        this.driver = driver;
+        this.intersections = Collections.unmodifiableList(new ArrayList<>(intersections));
+        this.parallelScan = parallelScan;
+        this.catalogSize = catalogSize;
+    }
+
+    // Runs the plan and returns matching books in ISBN order
+    public List<Book> execute() {
+        List<Book> result = new ArrayList<>();
+        if (driver == null) {
+            // no index applies: scan, in parallel when the catalog is large enough to pay for it
+            if (parallelScan) {
+                return catalog.values().parallelStream().filter(query).collect(Collectors.toList());
+            }
+            for (Book book : catalog.values()) {
+                if (query.test(book)) {
+                    result.add(book);
+                }
+            }
+            return result;
+        }
+
+        if (intersections.isEmpty()) {
+            Iterator<Book> candidates = driver.books();
+            while (candidates.hasNext()) {
+                Book book = candidates.next();
+                if (query.test(book)) {
+                    result.add(book);
+                }
+            }
+            return result;
+        }
+
+        // intersect the id lists first so only surviving books are fetched
+        long[] keys = driver.keys();
+        for (AccessPath path : intersections) {
+            if (keys.length == 0) {
+                break;
+            }
+            keys = intersect(keys, path.keys());
+        }
+        for (long key : keys) {
+            Book book = catalog.get(key);
+            // the book may have been removed since the index was read
+            if (book != null && query.test(book)) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    // Estimated number of candidate books the plan will look at
+    public long getEstimatedRows() {
+        if (driver == null) {
+            return catalogSize;
+        }
+        long estimate = driver.getEstimatedRows();
+        for (AccessPath path : intersections) {
+            estimate = Math.min(estimate, path.getEstimatedRows());
+        }
+        return estimate;
+    }
+
+    // Human readable description of the chosen plan
+    public String explain() {
+        StringBuilder out = new StringBuilder();
+        out.append("Query: ").append(query).append('\n');
+        int step = 1;
+        if (driver == null) {
+            out.append("  ").append(step++).append(". ")
+               .append(parallelScan ? "parallel scan" : "scan")
+               .append(" of catalog (").append(catalogSize).append(" books)\n");
+        } else {
+            out.append("  ").append(step++).append(". index ").append(driver.getDescription())
+               .append(" (est. ").append(driver.getEstimatedRows()).append(" rows)\n");
+            for (AccessPath path : intersections) {
+                out.append("  ").append(step++).append(". intersect index ").append(path.getDescription())
+                   .append(" (est. ").append(path.getEstimatedRows()).append(" rows)\n");
+            }
+            if (!intersections.isEmpty()) {
+                out.append("  ").append(step++).append(". fetch surviving books by ISBN key\n");
+            }
+        }
+        out.append("  ").append(step).append(". filter each candidate on ").append(query).append('\n');
+        out.append("Estimated candidates: ").append(getEstimatedRows());
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    // Intersection of two ascending key arrays: each key of the shorter one is binary searched
+    // in the rest of the longer one, so the cost is O(short * log long)
+    static long[] intersect(long[] a, long[] b) {
+        if (a.length > b.length) {
+            long[] swap = a;
+            a = b;
+            b = swap;
+        }
+        long[] out = new long[a.length];
+        int n = 0;
+        int from = 0;
+        for (long key : a) {
+            int at = Arrays.binarySearch(b, from, b.length, key);
+            if (at >= 0) {
+                out[n++] = key;
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+            if (from >= b.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,181 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.function.IntSupplier;
+
+/*
+ * Picks an execution plan for a BookQuery using the indexes Library maintains.
+ *
+ * Every criterion that has an index becomes a candidate access path with a cardinality
+ * estimate read from the index itself. The most selective path drives the query; other
+ * paths of comparable size are intersected with it as sorted ISBN-key lists; everything
+ * else, including availability which changes too often to index, is checked per book.
+ * With no usable index the catalog is scanned, in parallel once it is large.
+ */
+final class QueryPlanner {
+
+    // Paths at most this many times larger than the driver are worth intersecting
+    static final int INTERSECT_RATIO = 4;
+    // Below this many books a parallel scan costs more than it saves
+    static final int PARALLEL_SCAN_THRESHOLD = 10_000;
+    // Books counted to estimate an ISBN prefix range before extrapolating
+    static final int PREFIX_SAMPLE = 64;
+
+    private final NavigableMap<Long, Book> catalog;
+    private final IntSupplier catalogSize;
+    private final StringBookIndex titleIndex;
+    private final StringBookIndex authorIndex;
+    private final StringBookIndex genreIndex;
+    private final SortedBookIndex<Integer> yearIndex;
+
+    QueryPlanner(NavigableMap<Long, Book> catalog, IntSupplier catalogSize, StringBookIndex titleIndex,
+                 StringBookIndex authorIndex, StringBookIndex genreIndex,
+                 SortedBookIndex<Integer> yearIndex) {
+        this.catalog = catalog;
+        this.catalogSize = catalogSize;
+        this.titleIndex = titleIndex;
+        this.authorIndex = authorIndex;
+        this.genreIndex = genreIndex;
+        this.yearIndex = yearIndex;
+    }
+
+    QueryPlan plan(BookQuery query) {
+        int catalogSize = this.catalogSize.getAsInt();
+        List<QueryPlan.AccessPath> paths = new ArrayList<>();
+
+        if (query.hasIsbn()) {
+            paths.add(isbnPath(query.getIsbn(), query.getIsbnKey()));
+        }
+        if (query.getTitle() != null) {
+            paths.add(bucketPath("title='" + query.getTitle() + "'", titleIndex, query.getTitle()));
+        }
+        if (query.getAuthor() != null) {
+            paths.add(bucketPath("author='" + query.getAuthor() + "'", authorIndex, query.getAuthor()));
+        }
+        if (query.getGenre() != null) {
+            paths.add(bucketPath("genre='" + query.getGenre() + "'", genreIndex, query.getGenre()));
+        }
+        if (query.hasYearRange()) {
+            paths.add(yearPath(query.getFromYear(), query.getToYear()));
+        }
+        if (query.getPrefixRange() != null) {
+            // counting a prefix range walks it, so stop once it is clearly not the best choice
+            long cap = PREFIX_SAMPLE;
+            for (QueryPlan.AccessPath path : paths) {
+                cap = Math.min(cap, path.getEstimatedRows());
+            }
+            paths.add(prefixPath(query.getIsbnPrefix(), query.getPrefixRange(), cap, catalogSize));
+        }
+
+        if (paths.isEmpty()) {
+            return new QueryPlan(query, catalog, null, Collections.emptyList(),
+                catalogSize >= PARALLEL_SCAN_THRESHOLD, catalogSize);
+        }
+
+        paths.sort(Comparator.comparingLong(QueryPlan.AccessPath::getEstimatedRows));
+        QueryPlan.AccessPath driver = paths.get(0);
+        List<QueryPlan.AccessPath> intersections = new ArrayList<>();
+        // a driver of zero or one row is cheaper to check directly than to intersect
+        if (driver.getEstimatedRows() > 1) {
+            for (QueryPlan.AccessPath path : paths.subList(1, paths.size())) {
+                if (path.getEstimatedRows() <= driver.getEstimatedRows() * INTERSECT_RATIO) {
+                    intersections.add(path);
+                }
+            }
+        }
+        return new QueryPlan(query, catalog, driver, intersections, false, catalogSize);
+    }
+
+    private QueryPlan.AccessPath isbnPath(String isbn, long key) {
+        Book book = catalog.get(key);
+        List<Book> found = book == null ? Collections.emptyList() : Collections.singletonList(book);
+        return new QueryPlan.AccessPath("isbn=" + isbn, found.size()) {
+            Iterator<Book> books() {
+                return found.iterator();
+            }
+
+            long[] keys() {
+                return found.isEmpty() ? new long[0] : new long[] { key };
+            }
+        };
+    }
+
+    private static QueryPlan.AccessPath bucketPath(String description, StringBookIndex index, String value) {
+        return new QueryPlan.AccessPath(description, index.count(value)) {
+            Iterator<Book> books() {
+                return index.bucket(value).values().iterator();
+            }
+
+            long[] keys() {
+                return toKeys(index.bucket(value));
+            }
+        };
+    }
+
+    private QueryPlan.AccessPath yearPath(int fromYear, int toYear) {
+        return new QueryPlan.AccessPath("publishedYear " + fromYear + ".." + toYear,
+            yearIndex.countRange(fromYear, toYear)) {
+            Iterator<Book> books() {
+                // year buckets are not ordered by ISBN across years, so go through the sorted keys
+                long[] keys = keys();
+                List<Book> books = new ArrayList<>(keys.length);
+                for (long key : keys) {
+                    Book book = catalog.get(key);
+                    if (book != null) {
+                        books.add(book);
+                    }
+                }
+                return books.iterator();
+            }
+
+            long[] keys() {
+                return yearIndex.keysInRange(fromYear, toYear);
+            }
+        };
+    }
+
+    // Walks at most cap + 1 keys of the range. A range with more books than that is estimated
+    // from the share of the key range those books cover, so planning stays O(log n) however
+    // many books share the prefix.
+    private QueryPlan.AccessPath prefixPath(String prefix, long[] range, long cap, int catalogSize) {
+        NavigableMap<Long, Book> slice = catalog.subMap(range[0], true, range[1], false);
+        long seen = 0;
+        long last = range[0];
+        for (Iterator<Long> it = slice.keySet().iterator(); it.hasNext() && seen <= cap; ) {
+            last = it.next();
+            seen++;
+        }
+        long estimate = seen;
+        if (seen > cap && cap == PREFIX_SAMPLE) {
+            double covered = (double) (last - range[0] + 1) / (range[1] - range[0]);
+            estimate = Math.max(seen, Math.min(catalogSize, Math.round(seen / covered)));
+        }
+        return new QueryPlan.AccessPath("isbnPrefix=" + prefix, estimate) {
+            Iterator<Book> books() {
+                return slice.values().iterator();
+            }
+
+            long[] keys() {
+                return toKeys(slice);
+            }
+        };
+    }
+
+    private static long[] toKeys(NavigableMap<Long, Book> books) {
+        long[] keys = new long[16];
+        int n = 0;
+        for (Long key : books.keySet()) {
+            if (n == keys.length) {
+                keys = Arrays.copyOf(keys, n * 2);
+            }
+            keys[n++] = key;
+        }
+        return Arrays.copyOf(keys, n);
+    }
+}
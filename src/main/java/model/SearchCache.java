@@ -0,0 +1,510 @@
+package model;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * Bounded cache of findBookByTitle/Author/Genre results sitting in front of the indexes.
+ *
+ * Both hits and misses are cached. Library invalidates an entry only when a change can alter
+ * that entry's answer: adding a book can only change the searches for its own title, author and
+ * genre, and only if it sorts before the cached answer; removing a book only matters where it
+ * was the cached answer. Borrowing and returning never change which book a search returns, so
+ * they do not touch the cache at all.
+ *
+ * Two eviction policies are available:
+ *   LRU         classic least-recently-used
+ *   W_TINY_LFU  a small LRU window in front of a segmented LRU main area, with a count-min
+ *               sketch deciding whether a window victim is popular enough to displace the main
+ *               area's victim. Better for skewed traffic where a burst of one-off searches
+ *               would otherwise push out the bestsellers.
+ *
+ * Large caches are split by key hash into up to MAX_SEGMENTS segments, each with its own lock,
+ * invalidation epoch and eviction state, so searches for different values rarely contend. A
+ * search reads its segment's epoch without locking and takes the segment lock for get, and once
+ * more for put after a miss. Every operation is O(1).
+ */
+public final class SearchCache {
+
+    public enum Policy { LRU, W_TINY_LFU }
+
+    // Which search a cached entry belongs to
+    enum Field { TITLE, AUTHOR, GENRE }
+
+    // Cached value for "searched, nothing found"
+    private static final Object NOT_FOUND = new Object();
+    static final int MAX_SEGMENTS = 16;
+    // Smaller segments would make the eviction policy noticeably less accurate
+    static final int MIN_SEGMENT_ENTRIES = 256;
+
+    private final Policy policy;
+    private final int maxEntries;
+    private final Segment[] segments;
+
+    public SearchCache(Policy policy, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.maxEntries = maxEntries;
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_ENTRIES <= maxEntries) {
+            count <<= 1;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            int capacity = maxEntries / count + (i < maxEntries % count ? 1 : 0);
+            segments[i] = new Segment(policy == Policy.LRU ? new LruStore(capacity) : new TinyLfuStore(capacity));
+        }
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    public Stats stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long invalidations = 0;
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+                misses += segment.misses;
+                evictions += segment.evictions;
+                invalidations += segment.invalidations;
+                size += segment.store.size();
+            }
+        }
+        return new Stats(hits, misses, evictions, invalidations, size);
+    }
+
+    /////////////////////////////////////Used by Library////////////////////////////////////
+
+    // Taken before running a search, handed back to put
+    long stamp(Field field, String value) {
+        return segmentOf(new Key(field, value)).epoch;
+    }
+
+    // Returns the cached book, NOT_FOUND, or null when nothing is cached
+    Object get(Field field, String value) {
+        Key key = new Key(field, value);
+        return segmentOf(key).get(key);
+    }
+
+    // Caches a search result, book may be null for "not found"
+    void put(Field field, String value, Book book, long stamp) {
+        Key key = new Key(field, value);
+        segmentOf(key).put(key, book == null ? NOT_FOUND : book, stamp);
+    }
+
+    static boolean isNotFound(Object cached) {
+        return cached == NOT_FOUND;
+    }
+
+    // A book was added: searches it now answers, or answers first, must be recomputed
+    void bookAdded(Book book) {
+        invalidateIfAdded(new Key(Field.TITLE, book.getTitle()), book);
+        invalidateIfAdded(new Key(Field.AUTHOR, book.getAuthor()), book);
+        invalidateIfAdded(new Key(Field.GENRE, book.getGenre()), book);
+    }
+
+    // A book was removed: only searches that returned it can change
+    void bookRemoved(Book book) {
+        invalidateIfCached(new Key(Field.TITLE, book.getTitle()), book);
+        invalidateIfCached(new Key(Field.AUTHOR, book.getAuthor()), book);
+        invalidateIfCached(new Key(Field.GENRE, book.getGenre()), book);
+    }
+
+    // The whole catalog was replaced, used only by bulk loads
+    void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.epoch++;
+                segment.invalidations += segment.store.size();
+                segment.store.clear();
+            }
+        }
+    }
+
+    private void invalidateIfAdded(Key key, Book added) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.epoch++;
+            Object cached = segment.store.peek(key);
+            // searches return the matching book with the lowest ISBN key
+            if (cached == NOT_FOUND || (cached != null && ((Book) cached).getIsbnKey() > added.getIsbnKey())) {
+                segment.store.remove(key);
+                segment.invalidations++;
+            }
+        }
+    }
+
+    private void invalidateIfCached(Key key, Book removed) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.epoch++;
+            if (segment.store.peek(key) == removed) {
+                segment.store.remove(key);
+                segment.invalidations++;
+            }
+        }
+    }
+
+    private Segment segmentOf(Key key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /*
+     * One lock's worth of the cache. Only the segment of a key can hold it, so an invalidation
+     * only has to bump the epoch of that segment.
+     */
+    private static final class Segment {
+        final Store store;
+        // Bumped on every invalidation in this segment; a search only caches its answer if no
+        // invalidation happened here while it was running, so a stale answer is never stored
+        volatile long epoch;
+        long hits;
+        long misses;
+        long evictions;
+        long invalidations;
+
+        Segment(Store store) {
+            this.store = store;
+        }
+
+        synchronized Object get(Key key) {
+            Object cached = store.get(key);
+            if (cached == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return cached;
+        }
+
+        synchronized void put(Key key, Object value, long stamp) {
+            if (stamp == epoch) {
+                evictions += store.put(key, value);
+            }
+        }
+    }
+
+    /////////////////////////////////////Statistics////////////////////////////////////
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getInvalidations() { return invalidations; }
+        public int getSize() { return size; }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" + "hits=" + hits + ", misses=" + misses + ", hitRate="
+            + String.format("%.3f", getHitRate()) + ", evictions=" + evictions
+            + ", invalidations=" + invalidations + ", size=" + size + "}";
+        }
+    }
+
+    /////////////////////////////////////Storage////////////////////////////////////
+
+    private static final class Key {
+        private final Field field;
+        private final String value;
+        private final int hash;
+
+        Key(Field field, String value) {
+            this.field = field;
+            this.value = value;
+            this.hash = 31 * field.ordinal() + value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return field == other.field && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private interface Store {
+        // Lookup that counts as an access
+        Object get(Key key);
+        // Lookup that does not change recency or frequency
+        Object peek(Key key);
+        // Returns the number of entries evicted to make room
+        int put(Key key, Object value);
+        void remove(Key key);
+        void clear();
+        int size();
+    }
+
+    // Segments are insertion-ordered maps; an access moves the entry to the tail by re-inserting it,
+    // which keeps peek a plain hash lookup that leaves the order alone
+    private static Object touch(LinkedHashMap<Key, Object> segment, Key key) {
+        Object value = segment.remove(key);
+        if (value != null) {
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    private static Map.Entry<Key, Object> eldest(LinkedHashMap<Key, Object> segment) {
+        return segment.entrySet().iterator().next();
+    }
+
+    private static Map.Entry<Key, Object> removeEldest(LinkedHashMap<Key, Object> segment) {
+        Map.Entry<Key, Object> entry = new AbstractMap.SimpleImmutableEntry<>(eldest(segment));
+        segment.remove(entry.getKey());
+        return entry;
+    }
+
+    private static final class LruStore implements Store {
+        private final int capacity;
+        private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>();
+
+        LruStore(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public Object get(Key key) {
+            return touch(entries, key);
+        }
+
+        public Object peek(Key key) {
+            return entries.get(key);
+        }
+
+        public int put(Key key, Object value) {
+            entries.remove(key);
+            entries.put(key, value);
+            if (entries.size() <= capacity) {
+                return 0;
+            }
+            removeEldest(entries);
+            return 1;
+        }
+
+        public void remove(Key key) {
+            entries.remove(key);
+        }
+
+        public void clear() {
+            entries.clear();
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /*
+     * W-TinyLFU: new entries enter a window LRU (1% of capacity). The window's victim then
+     * competes with the probation segment's victim, and the one the frequency sketch has seen
+     * more often stays. Entries hit while in probation are promoted to the protected segment (80%).
+     */
+    private static final class TinyLfuStore implements Store {
+        private final int windowCapacity;
+        private final int mainCapacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<Key, Object> window = new LinkedHashMap<>();
+        private final LinkedHashMap<Key, Object> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<Key, Object> protectedSegment = new LinkedHashMap<>();
+        private final FrequencySketch sketch;
+
+        TinyLfuStore(int capacity) {
+            this.windowCapacity = Math.max(1, capacity / 100);
+            this.mainCapacity = Math.max(1, capacity - windowCapacity);
+            this.protectedCapacity = Math.max(1, (int) (mainCapacity * 0.8));
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        public Object get(Key key) {
+            sketch.increment(key.hashCode());
+            Object value = touch(window, key);
+            if (value == null) {
+                value = touch(protectedSegment, key);
+            }
+            if (value == null) {
+                value = probation.remove(key);
+                if (value != null) {
+                    promote(key, value);
+                }
+            }
+            return value;
+        }
+
+        public Object peek(Key key) {
+            Object value = window.get(key);
+            if (value == null) {
+                value = probation.get(key);
+            }
+            if (value == null) {
+                value = protectedSegment.get(key);
+            }
+            return value;
+        }
+
+        public int put(Key key, Object value) {
+            sketch.increment(key.hashCode());
+            if (window.containsKey(key)) {
+                window.remove(key);
+                window.put(key, value);
+                return 0;
+            }
+            if (probation.remove(key) != null || protectedSegment.remove(key) != null) {
+                promote(key, value);
+                return 0;
+            }
+            window.put(key, value);
+            if (window.size() <= windowCapacity) {
+                return 0;
+            }
+            // window overflow: its victim competes for a place in the main area
+            Map.Entry<Key, Object> candidate = removeEldest(window);
+            if (probation.size() + protectedSegment.size() < mainCapacity) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                return 0;
+            }
+            LinkedHashMap<Key, Object> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+            Key victim = eldest(victimSegment).getKey();
+            if (sketch.frequency(candidate.getKey().hashCode()) > sketch.frequency(victim.hashCode())) {
+                victimSegment.remove(victim);
+                probation.put(candidate.getKey(), candidate.getValue());
+            }
+            // either the victim or the candidate leaves the cache
+            return 1;
+        }
+
+        public void remove(Key key) {
+            if (window.remove(key) == null && probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        }
+
+        public void clear() {
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+        }
+
+        public int size() {
+            return window.size() + probation.size() + protectedSegment.size();
+        }
+
+        private void promote(Key key, Object value) {
+            protectedSegment.put(key, value);
+            if (protectedSegment.size() > protectedCapacity) {
+                // demote the protected segment's eldest back to probation
+                Map.Entry<Key, Object> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+    }
+
+    /*
+     * Count-min sketch with four rows of 4-bit counters, sixteen counters packed per long.
+     * All counters are halved once the sample size is reached so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(8, capacity) - 1) << 1;
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * Math.max(8, capacity);
+        }
+
+        int frequency(int hash) {
+            int spread = spread(hash);
+            int start = (spread & 3) << 2;
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                int shift = (start + row) << 2;
+                min = Math.min(min, (int) ((table[indexOf(spread, row)] >>> shift) & 0xF));
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            int spread = spread(hash);
+            int start = (spread & 3) << 2;
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(spread, row);
+                int shift = (start + row) << 2;
+                if (((table[index] >>> shift) & 0xF) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int indexOf(int spread, int row) {
+            long h = (spread + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = sampleSize / 2;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/*
+ * Ordered secondary index over the catalog, backed by skip lists.
+ * Each key maps to a bucket of books ordered by ISBN key, so keys do not have to be unique
+ * and every bucket doubles as a sorted id list the query planner can intersect.
+ *
+ * Lookups and range scans cost O(log n + k) and never lock.
+ * Writers are expected to be serialized by the owning Library.
+ */
+final class SortedBookIndex<K extends Comparable<K>> {
+
+    private final ConcurrentNavigableMap<K, Bucket> entries = new ConcurrentSkipListMap<>();
+
+    // Books sharing one key, with a size kept alongside because skip list size() is O(n)
+    private static final class Bucket {
+        final ConcurrentNavigableMap<Long, Book> books = new ConcurrentSkipListMap<>();
+        volatile int size;
+    }
+
+    void add(K key, Book book) {
+        Bucket bucket = entries.computeIfAbsent(key, k -> new Bucket());
+        if (bucket.books.put(book.getIsbnKey(), book) == null) {
+            bucket.size++;
+        }
+    }
+
+    void remove(K key, Book book) {
+        Bucket bucket = entries.get(key);
+        if (bucket == null) {
+            return;
+        }
+        if (bucket.books.remove(book.getIsbnKey()) != null) {
+            bucket.size--;
+        }
+        // drop empty buckets so scans do not walk over them
+        if (bucket.size == 0) {
+            entries.remove(key, bucket);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    // Every indexed book, in key order
+    Stream<Book> ordered() {
+        return flatten(entries);
+    }
+
+    // Books whose key lies between from and to, both inclusive
+    Stream<Book> range(K from, K to) {
+        if (from.compareTo(to) > 0) {
+            return Stream.empty();
+        }
+        return flatten(entries.subMap(from, true, to, true));
+    }
+
+    // Books with exactly this key, ordered by ISBN key
+    NavigableMap<Long, Book> bucket(K key) {
+        Bucket bucket = entries.get(key);
+        return bucket == null ? Collections.emptyNavigableMap() : bucket.books;
+    }
+
+    // Number of books with exactly this key, O(log n)
+    int count(K key) {
+        Bucket bucket = entries.get(key);
+        return bucket == null ? 0 : bucket.size;
+    }
+
+    // Number of books with a key between from and to, O(log n + distinct keys in range)
+    long countRange(K from, K to) {
+        if (from.compareTo(to) > 0) {
+            return 0;
+        }
+        long total = 0;
+        for (Bucket bucket : entries.subMap(from, true, to, true).values()) {
+            total += bucket.size;
+        }
+        return total;
+    }
+
+    // Sorted ISBN keys of the books with a key between from and to
+    long[] keysInRange(K from, K to) {
+        if (from.compareTo(to) > 0) {
+            return new long[0];
+        }
+        long[] keys = new long[16];
+        int n = 0;
+        for (Bucket bucket : entries.subMap(from, true, to, true).values()) {
+            for (Long key : bucket.books.keySet()) {
+                if (n == keys.length) {
+                    keys = Arrays.copyOf(keys, n * 2);
+                }
+                keys[n++] = key;
+            }
+        }
+        keys = Arrays.copyOf(keys, n);
+        // buckets are each sorted, but not against each other
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static <K> Stream<Book> flatten(NavigableMap<K, Bucket> view) {
+        return view.values().stream().flatMap(bucket -> bucket.books.values().stream());
+    }
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.StampedLock;
+import util.StringIdMap;
+
+/*
+ * Exact-match secondary index over a string field of the catalog (title, author, genre).
+ *
+ * Values are interned in a StringIdMap and each id owns one slot of a plain array. A value
+ * only one book has, the usual case for titles, keeps that Book in its slot; once a second
+ * book shares the value the slot holds a bucket of books ordered by ISBN key. A unique value
+ * so costs an interned entry and an array slot, where a skip list keyed by the string needs
+ * a map node, a bucket and a nested skip list. Values have no order here; range queries go
+ * through SortedBookIndex.
+ *
+ * Interned values stay when their last book leaves, so ids never change until clear.
+ * Writers are expected to be serialized by the owning Library. Readers do not lock: like
+ * BookTable they read optimistically under a StampedLock and only take its read lock when a
+ * write happened in between.
+ */
+final class StringBookIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private StringIdMap ids = new StringIdMap();
+    // per value id: null, a single Book, or a Bucket of two or more books
+    private Object[] slots = new Object[MIN_CAPACITY];
+
+    // Books sharing one value, with a size kept alongside because skip list size() is O(n)
+    private static final class Bucket {
+        final ConcurrentNavigableMap<Long, Book> books = new ConcurrentSkipListMap<>();
+        volatile int size;
+    }
+
+    void add(String value, Book book) {
+        long stamp = lock.writeLock();
+        try {
+            int id = ids.intern(value);
+            if (id >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+            }
+            Object slot = slots[id];
+            if (slot == null) {
+                slots[id] = book;
+            } else if (slot instanceof Book) {
+                Book single = (Book) slot;
+                if (single.getIsbnKey() == book.getIsbnKey()) {
+                    slots[id] = book;
+                    return;
+                }
+                Bucket bucket = new Bucket();
+                bucket.books.put(single.getIsbnKey(), single);
+                bucket.books.put(book.getIsbnKey(), book);
+                bucket.size = 2;
+                slots[id] = bucket;
+            } else {
+                Bucket bucket = (Bucket) slot;
+                if (bucket.books.put(book.getIsbnKey(), book) == null) {
+                    bucket.size++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String value, Book book) {
+        long stamp = lock.writeLock();
+        try {
+            int id = ids.idOf(value);
+            Object slot = id < 0 ? null : slots[id];
+            if (slot instanceof Book) {
+                if (((Book) slot).getIsbnKey() == book.getIsbnKey()) {
+                    slots[id] = null;
+                }
+            } else if (slot != null) {
+                Bucket bucket = (Bucket) slot;
+                if (bucket.books.remove(book.getIsbnKey()) != null) {
+                    bucket.size--;
+                }
+                // back to a single book so the bucket can be collected
+                if (bucket.size == 1) {
+                    slots[id] = bucket.books.firstEntry().getValue();
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            ids = new StringIdMap();
+            slots = new Object[MIN_CAPACITY];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // The book with this value and the lowest ISBN key, or null
+    Book first(String value) {
+        Object slot = slotOf(value);
+        if (slot == null || slot instanceof Book) {
+            return (Book) slot;
+        }
+        return ((Bucket) slot).books.firstEntry().getValue();
+    }
+
+    // Books with exactly this value, ordered by ISBN key
+    NavigableMap<Long, Book> bucket(String value) {
+        Object slot = slotOf(value);
+        if (slot == null) {
+            return Collections.emptyNavigableMap();
+        }
+        if (slot instanceof Book) {
+            Book book = (Book) slot;
+            return Collections.unmodifiableNavigableMap(new TreeMap<>(Collections.singletonMap(book.getIsbnKey(), book)));
+        }
+        return ((Bucket) slot).books;
+    }
+
+    // Number of books with exactly this value, O(1)
+    int count(String value) {
+        Object slot = slotOf(value);
+        if (slot == null) {
+            return 0;
+        }
+        return slot instanceof Book ? 1 : ((Bucket) slot).size;
+    }
+
+    private Object slotOf(String value) {
+        long stamp = lock.tryOptimisticRead();
+        Object slot = lookup(value);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = lookup(value);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return slot;
+    }
+
+    // May see a half-applied write; slotOf validates the result before trusting it
+    private Object lookup(String value) {
+        int id = ids.idOf(value);
+        Object[] array = slots;
+        return id < 0 || id >= array.length ? null : array[id];
+    }
+}
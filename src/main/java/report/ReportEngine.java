@@ -0,0 +1,186 @@
+package report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.Book;
+import model.Library;
+
+/*
+ * Group-by, count and top-k reports over a Library, computed with parallel streams.
+ *
+ * The catalog is streamed straight from the library without copying; its spliterator splits
+ * into key-range chunks that run as tasks on the configured ForkJoinPool. Each chunk counts
+ * into its own HashMap and the maps are merged pairwise, so workers never contend on shared state.
+ * Results are weakly consistent with concurrent changes, like every other catalog view.
+ */
+public class ReportEngine {
+
+    private final Library library;
+    private final ForkJoinPool pool;
+
+    // Runs reports on the common pool, which has one worker per core
+    public ReportEngine(Library library) {
+        this(library, ForkJoinPool.commonPool());
+    }
+
+    // Runs reports on a dedicated pool, e.g. new ForkJoinPool(4) to leave cores for request traffic
+    public ReportEngine(Library library, ForkJoinPool pool) {
+        this.library = library;
+        this.pool = pool;
+    }
+
+    /////////////////////////////////////Counts////////////////////////////////////
+
+    // Number of books per key, for any classifier such as Book::getAuthor
+    public <K> Map<K, Long> countBy(Function<Book, K> classifier) {
+        return countBy(book -> true, classifier);
+    }
+
+    // Number of books matching the filter, per key
+    public <K> Map<K, Long> countBy(Predicate<Book> filter, Function<Book, K> classifier) {
+        return run(() -> books().filter(filter).collect(counting(classifier)));
+    }
+
+    public Map<String, Long> countByGenre() {
+        return countBy(Book::getGenre);
+    }
+
+    public Map<String, Long> countByAuthor() {
+        return countBy(Book::getAuthor);
+    }
+
+    // Keys are the first year of each decade, e.g. 1990 for 1990-1999
+    public Map<Integer, Long> countByDecade() {
+        return countBy(book -> Math.floorDiv(book.getPublishedYear(), 10) * 10);
+    }
+
+    // Number of books matching the filter
+    public long count(Predicate<Book> filter) {
+        return run(() -> books().filter(filter).count());
+    }
+
+    /////////////////////////////////////Group-by////////////////////////////////////
+
+    // Books matching the filter grouped by key
+    public <K> Map<K, List<Book>> groupBy(Predicate<Book> filter, Function<Book, K> classifier) {
+        return run(() -> books().filter(filter).collect(Collectors.groupingBy(classifier)));
+    }
+
+    // Every borrowed book, found by scanning the catalog rather than the borrower map
+    public List<Book> borrowedBooks() {
+        return run(() -> books().filter(book -> !book.isAvailable()).collect(Collectors.toList()));
+    }
+
+    /////////////////////////////////////Top-k////////////////////////////////////
+
+    // The k keys with the highest counts, highest first, e.g. the ten most prolific authors
+    public <K> List<Map.Entry<K, Long>> topK(Function<Book, K> classifier, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        Map<K, Long> counts = countBy(classifier);
+        Comparator<Map.Entry<K, Long>> byCount = Map.Entry.comparingByValue();
+        // bounded min-heap keeps this O(n log k) instead of sorting every key
+        PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(k + 1, byCount);
+        for (Map.Entry<K, Long> entry : counts.entrySet()) {
+            heap.add(entry);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<K, Long>> top = new ArrayList<>(heap);
+        top.sort(byCount.reversed());
+        return top;
+    }
+
+    // The k books that come first under the comparator, e.g. the oldest books
+    public List<Book> topBooks(Predicate<Book> filter, Comparator<Book> order, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        List<Book> top = run(() -> books().filter(filter).collect(firstK(order, k)));
+        top.sort(order);
+        return top;
+    }
+
+    /////////////////////////////////////Internals////////////////////////////////////
+
+    private Stream<Book> books() {
+        return library.streamBooks().parallel();
+    }
+
+    // Parallel streams run in the pool of the thread that starts the terminal operation
+    private <T> T run(Callable<T> report) {
+        try {
+            return pool.submit(report).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Report interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Report failed", cause);
+        }
+    }
+
+    // Counts into one mutable long per key, merging the smaller map into the larger
+    private static <K> Collector<Book, ?, Map<K, Long>> counting(Function<Book, K> classifier) {
+        return Collector.<Book, Map<K, long[]>, Map<K, Long>>of(
+            HashMap::new,
+            (counts, book) -> counts.computeIfAbsent(classifier.apply(book), key -> new long[1])[0]++,
+            (left, right) -> {
+                Map<K, long[]> big = left.size() >= right.size() ? left : right;
+                Map<K, long[]> small = big == left ? right : left;
+                small.forEach((key, count) -> big.merge(key, count, (a, b) -> {
+                    a[0] += b[0];
+                    return a;
+                }));
+                return big;
+            },
+            counts -> {
+                Map<K, Long> result = new HashMap<>(counts.size() * 2);
+                counts.forEach((key, count) -> result.put(key, count[0]));
+                return result;
+            },
+            Collector.Characteristics.UNORDERED);
+    }
+
+    // Keeps the first k books under the order in a bounded max-heap per chunk
+    private static Collector<Book, ?, List<Book>> firstK(Comparator<Book> order, int k) {
+        Comparator<Book> reversed = order.reversed();
+        return Collector.of(
+            () -> new PriorityQueue<>(k + 1, reversed),
+            (heap, book) -> {
+                heap.add(book);
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            },
+            (left, right) -> {
+                for (Book book : right) {
+                    left.add(book);
+                    if (left.size() > k) {
+                        left.poll();
+                    }
+                }
+                return left;
+            },
+            heap -> new ArrayList<>(heap),
+            Collector.Characteristics.UNORDERED);
+    }
+}
@@ -0,0 +1,311 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import model.Book;
+import model.Hold;
+import model.Library;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Runs line-delimited commands against a Library, for scripted and bulk use of the
+ * application (LibraryApplication --batch).
+ *
+ * Each line is either CSV or, if it starts with '{', a JSON object with an "op" field:
+ *
+ *   add,<isbn>,<title>,<author>,<genre>,<year>     {"op":"add","isbn":..,"title":..,"author":..,"genre":..,"year":..}
+ *   remove,<isbn>                                  {"op":"remove","isbn":..}
+ *   borrow,<title>,<borrower>                      {"op":"borrow","title":..,"borrower":..}
+ *   return,<title>,<borrower>                      {"op":"return","title":..,"borrower":..}
+ *   hold,<title>,<borrower>                        {"op":"hold","title":..,"borrower":..}
+ *   find-title,<title>   find-author,<author>   find-genre,<genre>   find-isbn,<isbn>
+ *   count
+ *
+ * CSV fields follow the column order of FileUtils.exportBooksToCSV and cannot contain commas;
+ * use JSON for those. Blank lines and lines starting with # are skipped.
+ *
+ * Input is read through a buffered channel reader, BATCH_SIZE lines at a time. The lines of a
+ * batch are parsed in parallel, then executed in order while holding the library lock once for
+ * the whole batch, and their results are written through one buffered writer afterwards. Each
+ * command produces one tab-separated output line: its line number, OK or ERROR, and a detail in
+ * which tabs and line breaks are escaped as \t, \r and \n. A failing command does not stop
+ * the run.
+ */
+public final class BatchRunner {
+
+    static final int BATCH_SIZE = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // argument names per command, in CSV column order
+    private static final Map<String, String[]> ARGUMENTS = new HashMap<>();
+    static {
+        ARGUMENTS.put("add", new String[] { "isbn", "title", "author", "genre", "year" });
+        ARGUMENTS.put("remove", new String[] { "isbn" });
+        ARGUMENTS.put("borrow", new String[] { "title", "borrower" });
+        ARGUMENTS.put("return", new String[] { "title", "borrower" });
+        ARGUMENTS.put("hold", new String[] { "title", "borrower" });
+        ARGUMENTS.put("find-title", new String[] { "title" });
+        ARGUMENTS.put("find-author", new String[] { "author" });
+        ARGUMENTS.put("find-genre", new String[] { "genre" });
+        ARGUMENTS.put("find-isbn", new String[] { "isbn" });
+        ARGUMENTS.put("count", new String[0]);
+    }
+
+    private final Library library;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BatchRunner(Library library) {
+        this.library = library;
+    }
+
+    public Summary run(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        long ok = 0;
+        long failed = 0;
+        BufferedReader reader = new BufferedReader(Channels.newReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        List<String> lines = new ArrayList<>(BATCH_SIZE);
+        List<Integer> lineNumbers = new ArrayList<>(BATCH_SIZE);
+        int lineNumber = 0;
+        boolean more = true;
+        while (more) {
+            lines.clear();
+            lineNumbers.clear();
+            String line;
+            while (lines.size() < BATCH_SIZE && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    lines.add(line);
+                    lineNumbers.add(lineNumber);
+                }
+            }
+            more = lines.size() == BATCH_SIZE;
+
+            Command[] commands = new Command[lines.size()];
+            IntStream.range(0, commands.length).parallel()
+                .forEach(i -> commands[i] = parse(lines.get(i), lineNumbers.get(i)));
+
+            StringBuilder results = new StringBuilder(commands.length * 32);
+            // one lock acquisition for the batch; the library's own synchronized methods re-enter it
+            synchronized (library) {
+                for (Command command : commands) {
+                    String detail;
+                    boolean success;
+                    if (command.error != null) {
+                        detail = command.error;
+                        success = false;
+                    } else {
+                        try {
+                            detail = execute(command);
+                            success = true;
+                        } catch (Exception e) {
+                            detail = messageOf(e);
+                            success = false;
+                        }
+                    }
+                    if (success) {
+                        ok++;
+                    } else {
+                        failed++;
+                    }
+                    results.append(command.line).append('\t').append(success ? "OK" : "ERROR")
+                        .append('\t');
+                    appendEscaped(results, detail);
+                    results.append('\n');
+                }
+            }
+            writer.write(results.toString());
+            // a pipe reader sees each batch as soon as it is done
+            writer.flush();
+        }
+        return new Summary(ok, failed, System.nanoTime() - start);
+    }
+
+    private Command parse(String line, int lineNumber) {
+        try {
+            return line.startsWith("{") ? parseJson(line, lineNumber) : parseCsv(line, lineNumber);
+        } catch (IOException | IllegalArgumentException e) {
+            return Command.invalid(lineNumber, "Invalid command: " + messageOf(e));
+        }
+    }
+
+    private static Command parseCsv(String line, int lineNumber) {
+        String[] fields = line.split(",", -1);
+        String op = fields[0].trim();
+        String[] names = argumentsOf(op);
+        if (fields.length - 1 != names.length) {
+            throw new IllegalArgumentException(op + " takes " + names.length + " fields: " + String.join(",", names));
+        }
+        String[] args = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            args[i] = fields[i + 1].trim();
+        }
+        return new Command(lineNumber, op, args);
+    }
+
+    private Command parseJson(String line, int lineNumber) throws IOException {
+        JsonNode node = mapper.readTree(line);
+        String op = node.path("op").asText();
+        String[] names = argumentsOf(op);
+        String[] args = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            JsonNode value = node.get(names[i]);
+            if (value == null || value.isNull()) {
+                throw new IllegalArgumentException(op + " needs \"" + names[i] + "\"");
+            }
+            args[i] = value.asText().trim();
+        }
+        return new Command(lineNumber, op, args);
+    }
+
+    private static String[] argumentsOf(String op) {
+        String[] names = ARGUMENTS.get(op);
+        if (names == null) {
+            throw new IllegalArgumentException("unknown command '" + op + "'");
+        }
+        return names;
+    }
+
+    private String execute(Command command) throws Exception {
+        String[] args = command.args;
+        switch (command.op) {
+            case "add":
+                int year;
+                try {
+                    year = Integer.parseInt(args[4]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Published year is not a number: " + args[4]);
+                }
+                Book book = new Book(args[1], args[2], args[3], args[0], year);
+                library.addBook(book);
+                return "added " + book.getISBN();
+            case "remove":
+                library.removeBook(args[0]);
+                return "removed " + args[0];
+            case "borrow":
+                library.borrowBook(args[0], args[1]);
+                return "borrowed";
+            case "return":
+                library.returnBook(args[0], args[1]);
+                return "returned";
+            case "hold":
+                Hold hold = library.placeHold(args[0], args[1]);
+                return hold.isWaiting() ? "waiting, position " + library.holdsFor(args[0]).size() : "borrowed";
+            case "find-title":
+                return describe(library.findBookByTitle(args[0]));
+            case "find-author":
+                return describe(library.findBookByAuthor(args[0]));
+            case "find-genre":
+                return describe(library.findBookByGenre(args[0]));
+            case "find-isbn":
+                return describe(library.findBookByISBN(args[0]));
+            case "count":
+                return library.getTotalBookCount() + " books, " + library.getNumberOfBorrowedBooks() + " borrowed";
+            default:
+                throw new IllegalStateException("Unhandled command " + command.op);
+        }
+    }
+
+    // Same columns as FileUtils.exportBooksToCSV
+    private static String describe(Book book) {
+        return book.getISBN() + "," + book.getTitle() + "," + book.getAuthor() + "," + book.getGenre() + ","
+            + book.getPublishedYear() + "," + book.isAvailable();
+    }
+
+    // Jackson messages span lines and some exceptions have no message at all
+    private static String messageOf(Exception e) {
+        return e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+    }
+
+    // Keeps a detail on its own output line and column
+    private static void appendEscaped(StringBuilder out, String detail) {
+        for (int i = 0; i < detail.length(); i++) {
+            char c = detail.charAt(i);
+            switch (c) {
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    private static final class Command {
+        final int line;
+        final String op;
+        final String[] args;
+        // set instead of op and args when the line could not be parsed
+        final String error;
+
+        Command(int line, String op, String[] args) {
+            this(line, op, args, null);
+        }
+
+        private Command(int line, String op, String[] args, String error) {
+            this.line = line;
+            this.op = op;
+            this.args = args;
+            this.error = error;
+        }
+
+        static Command invalid(int line, String error) {
+            return new Command(line, null, null, error);
+        }
+    }
+
+    /*
+     * Outcome counts of one run
+     */
+    public static final class Summary {
+        private final long succeeded;
+        private final long failed;
+        private final long elapsedNanos;
+
+        Summary(long succeeded, long failed, long elapsedNanos) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            long total = succeeded + failed;
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%d commands in %d ms (%.0f/s): %d ok, %d failed",
+                total, getElapsedMillis(), seconds == 0 ? 0 : total / seconds, succeeded, failed);
+        }
+    }
+}
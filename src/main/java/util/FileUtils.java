@@ -4,6 +4,7 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import model.Book;
+import model.BorrowerRegistry;
 import model.Library;
 
 
@@ -31,6 +32,8 @@ public final class FileUtils {
 
     /*
      * loads library data from a file using java serialization
+     * ISBNs are normalized as the books are decoded, so older files with hyphenated
+     * or ISBN-10 values come back in canonical ISBN-13 form
      */
     public static Library loadLibraryFromFile(String fileName) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
@@ -41,6 +44,33 @@ public final class FileUtils {
         }
     }
 
+    /*
+     * saves the borrower registry (ids, names and tiers) to its own JSON file
+     * loan counts are not stored, they come from the library's borrower map
+     */
+    public static void saveBorrowersToFile(BorrowerRegistry registry, String fileName) throws IOException{
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            mapper.writerWithDefaultPrettyPrinter()
+                 .writeValue(new File(fileName), registry);
+        } catch (IOException e) {
+            throw new IOException("Failed to save borrowers to file: " + e.getMessage());
+        }
+    }
+
+    /*
+     * loads a borrower registry written by saveBorrowersToFile
+     * hand it to Library.setBorrowerRegistry to bring the loan counts up to date
+     */
+    public static BorrowerRegistry loadBorrowersFromFile(String fileName) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            return mapper.readValue(new File(fileName), BorrowerRegistry.class);
+        } catch (IOException e) {
+            throw new IOException("Failed to load borrowers from file: " + e.getMessage());
+        }
+    }
+
     /*
      * Exports library books to a CSV file
      */
@@ -71,16 +101,25 @@ public final class FileUtils {
             String line = reader.readLine(); 
 
             // Read book data
+            int lineNumber = 1;
             while((line = reader.readLine()) != null){
+                lineNumber++;
                 String[] data = line.split(",");
                 if(data.length >= 5){
-                    Book book = new Book(
-                        data[1],//title
-                        data[2],//author
-                        data[3],//genre
-                        data[0],//isbn
-                        Integer.parseInt(data[4])//published year
-                    );
+                    Book book;
+                    try{
+                        // the Book constructor normalizes the ISBN, so every imported row
+                        // gets its canonical form in this single pass
+                        book = new Book(
+                            data[1],//title
+                            data[2],//author
+                            data[3],//genre
+                            data[0],//isbn
+                            Integer.parseInt(data[4].trim())//published year
+                        );
+                    }catch(IllegalArgumentException e){
+                        throw new IOException("Invalid book on line " + lineNumber + ": " + e.getMessage());
+                    }
 
                     // Set availability if present
                     if(data.length > 5){
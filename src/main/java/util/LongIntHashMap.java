@@ -0,0 +1,324 @@
+package util;
+
+/*
+ * Open-addressing hash map from long keys to int values, e.g. ISBN key to book ordinal.
+ *
+ * Layout: one long[] of keys and one int[] of values, probed linearly, so an entry costs
+ * 12 bytes per slot instead of a HashMap node plus a boxed Long and Integer. Key 0 marks an
+ * empty slot and is stored on the side. Removal shifts the following entries back instead of
+ * leaving tombstones, so probe sequences stay short under churn.
+ *
+ * Resizing is incremental. When the table fills up a table twice the size takes over all new
+ * writes, and every later put or remove copies a few slots of the old table across. Lookups
+ * check the new table and then the old one. The old table is never restructured while it
+ * drains, only its values are overwritten with MOVED once their key has been written again,
+ * so its probe chains stay intact and no single call pays for a full rehash.
+ *
+ * Not thread-safe. get never throws and always terminates even while another thread writes,
+ * so a caller can read optimistically and validate afterwards (see model.BookTable).
+ * Integer.MIN_VALUE is reserved and cannot be stored as a value, and storing the missing value
+ * itself makes an entry indistinguishable from an absent one.
+ */
+public final class LongIntHashMap {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.6f;
+
+    // value of an old-table slot whose key has since been written to the new table
+    private static final int MOVED = Integer.MIN_VALUE;
+    // old-table slots copied per write while a resize is in progress
+    private static final int MIGRATE_STEP = 16;
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity, float loadFactor) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            this.threshold = Math.max(1, (int) (capacity * loadFactor));
+        }
+
+        // slot holding the key, or -1
+        int find(long key) {
+            int slot = indexFor(key, mask);
+            // bounded so that a torn read during a concurrent write still terminates
+            for (int probes = 0; probes <= mask; probes++) {
+                long k = keys[slot];
+                if (k == key) {
+                    return slot;
+                }
+                if (k == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private final float loadFactor;
+    private final int missingValue;
+
+    // receives every write
+    private Table table;
+    // previous table while it is being drained, otherwise null
+    private Table retiring;
+    // slots of the retiring table copied so far
+    private int migrated;
+    // occupied slots in table, drives the next resize
+    private int used;
+    // live entries including the zero key
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY, DEFAULT_LOAD_FACTOR, -1);
+    }
+
+    // expectedSize avoids resizing while loading, missingValue is what get returns for absent keys
+    public LongIntHashMap(int expectedSize, float loadFactor, int missingValue) {
+        if (loadFactor <= 0.1f || loadFactor >= 0.95f) {
+            throw new IllegalArgumentException("loadFactor must be between 0.1 and 0.95");
+        }
+        if (missingValue == MOVED) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE is reserved");
+        }
+        this.loadFactor = loadFactor;
+        this.missingValue = missingValue;
+        this.table = new Table(capacityFor(expectedSize, loadFactor), loadFactor);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        Table current = table;
+        int slot = current.find(key);
+        if (slot >= 0) {
+            return current.values[slot];
+        }
+        Table old = retiring;
+        if (old != null) {
+            slot = old.find(key);
+            if (slot >= 0) {
+                int value = old.values[slot];
+                if (value != MOVED) {
+                    return value;
+                }
+            }
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        if (table.find(key) >= 0) {
+            return true;
+        }
+        Table old = retiring;
+        if (old != null) {
+            int slot = old.find(key);
+            return slot >= 0 && old.values[slot] != MOVED;
+        }
+        return false;
+    }
+
+    // Returns the previous value, or the missing value
+    public int put(long key, int value) {
+        if (value == MOVED) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE is reserved");
+        }
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) {
+                size++;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        migrateStep();
+
+        int slot = table.find(key);
+        if (slot >= 0) {
+            int previous = table.values[slot];
+            table.values[slot] = value;
+            return previous;
+        }
+        int previous = retire(key);
+        if (previous == missingValue) {
+            size++;
+        }
+        insert(table, key, value);
+        used++;
+        if (used >= table.threshold) {
+            grow();
+        }
+        return previous;
+    }
+
+    // Returns the removed value, or the missing value
+    public int remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        migrateStep();
+
+        int slot = table.find(key);
+        int previous = missingValue;
+        if (slot >= 0) {
+            previous = table.values[slot];
+            deleteSlot(table, slot);
+            used--;
+        }
+        // an older copy may still sit in the retiring table
+        int retired = retire(key);
+        if (slot < 0) {
+            previous = retired;
+        }
+        if (slot >= 0 || retired != missingValue) {
+            size--;
+        }
+        return previous;
+    }
+
+    public void clear() {
+        table = new Table(MIN_CAPACITY, loadFactor);
+        retiring = null;
+        migrated = 0;
+        used = 0;
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    // Capacity of the current table, for benchmarks and tests
+    int capacity() {
+        return table.mask + 1;
+    }
+
+    boolean isResizing() {
+        return retiring != null;
+    }
+
+    /////////////////////////////////////Internals////////////////////////////////////
+
+    // Hides a live copy of the key in the retiring table, returning its value or the missing value
+    private int retire(long key) {
+        Table old = retiring;
+        if (old == null) {
+            return missingValue;
+        }
+        int slot = old.find(key);
+        if (slot < 0 || old.values[slot] == MOVED) {
+            return missingValue;
+        }
+        int value = old.values[slot];
+        old.values[slot] = MOVED;
+        // slots already copied also have a copy in table; the caller deals with that one
+        return slot < migrated ? missingValue : value;
+    }
+
+    private void grow() {
+        if (retiring != null) {
+            // the previous resize has not finished; complete it before starting another
+            finishMigration();
+        }
+        retiring = table;
+        migrated = 0;
+        table = new Table((table.mask + 1) * 2, loadFactor);
+        used = 0;
+        migrateStep();
+    }
+
+    private void migrateStep() {
+        Table old = retiring;
+        if (old == null) {
+            return;
+        }
+        int end = Math.min(old.mask + 1, migrated + MIGRATE_STEP);
+        for (int slot = migrated; slot < end; slot++) {
+            long key = old.keys[slot];
+            int value = old.values[slot];
+            if (key != 0 && value != MOVED && table.find(key) < 0) {
+                insert(table, key, value);
+                used++;
+            }
+        }
+        migrated = end;
+        if (migrated > old.mask) {
+            retiring = null;
+        }
+    }
+
+    private void finishMigration() {
+        while (retiring != null) {
+            migrateStep();
+        }
+    }
+
+    private static void insert(Table t, long key, int value) {
+        int slot = indexFor(key, t.mask);
+        while (t.keys[slot] != 0) {
+            slot = (slot + 1) & t.mask;
+        }
+        // value first, so an optimistic reader that sees the key also sees its value
+        t.values[slot] = value;
+        t.keys[slot] = key;
+    }
+
+    // Backward-shift deletion: pull later entries of the same probe run into the gap
+    private static void deleteSlot(Table t, int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & t.mask;
+            long key = t.keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = indexFor(key, t.mask);
+            // move the entry if its home is not cyclically between the gap and its slot
+            boolean movable = gap <= slot ? (home <= gap || home > slot) : (home <= gap && home > slot);
+            if (movable) {
+                t.keys[gap] = key;
+                t.values[gap] = t.values[slot];
+                gap = slot;
+            }
+        }
+        t.keys[gap] = 0;
+    }
+
+    private static int indexFor(long key, int mask) {
+        // fibonacci hashing spreads sequential ISBNs over the whole table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / loadFactor) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
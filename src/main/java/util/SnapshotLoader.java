@@ -0,0 +1,249 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import model.Book;
+import model.Library;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/*
+ * Fast-start loader for the JSON files written by FileUtils.saveLibraryToFile.
+ *
+ * Phases:
+ *   scan    one streaming pass over the file tokenizes the top level and records where each
+ *           element of the "books" array starts and ends, without building any objects
+ *   decode  the recorded slices are bound to Books in chunks on the ForkJoinPool, straight
+ *           into a pre-sized array; each chunk reads only its own bytes with a positional read
+ *   index   Library.loadSnapshot builds the catalog and every index once
+ *
+ * The file is never held in memory as a whole and offsets are longs, so the size of a
+ * snapshot is only limited by the books it holds.
+ *
+ * The derived arrays the writer also emits (allBooks, allAvailableBooks, borrowedBooksList,
+ * borrowerReport) are skipped, since the catalog and borrowerMap already hold that data.
+ * The format is unchanged; FileUtils.loadLibraryFromFile can still read every file.
+ */
+public final class SnapshotLoader {
+
+    static final int CHUNK_SIZE = 2048;
+
+    private static final TypeReference<Map<String, List<Book>>> BORROWER_MAP =
+        new TypeReference<Map<String, List<Book>>>() {};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    // ObjectReader is immutable and safe to share between decoding threads
+    private final ObjectReader bookReader = mapper.readerFor(Book.class);
+    private final ForkJoinPool pool;
+
+    public SnapshotLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SnapshotLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Result load(String fileName) throws IOException {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        long start = System.nanoTime();
+
+        Path path = Paths.get(fileName);
+        Slices slices = new Slices();
+        Map<String, List<Book>> borrowerMap = new HashMap<>();
+        try (InputStream in = Files.newInputStream(path);
+             JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Failed to load library from file: expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("books".equals(field) && value == JsonToken.START_ARRAY) {
+                    scanArray(parser, slices);
+                } else if ("borrowerMap".equals(field) && value == JsonToken.START_OBJECT) {
+                    borrowerMap = parser.readValueAs(BORROWER_MAP);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to load library from file: " + e.getMessage());
+        }
+        long mark = lap(phases, "scan", start);
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new IOException("Failed to load library from file: " + e.getMessage());
+        }
+        Book[] books;
+        try (channel) {
+            books = decode(channel, slices);
+        }
+        mark = lap(phases, "decode", mark);
+
+        Library library = new Library();
+        Map<String, List<Book>> borrowers = borrowerMap;
+        run(() -> library.loadSnapshot(books, borrowers));
+        lap(phases, "index", mark);
+
+        return new Result(library, books.length, phases, System.nanoTime() - start);
+    }
+
+    // Records the byte range of every object in the array, skipping over its contents
+    private static void scanArray(JsonParser parser, Slices slices) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            long from = parser.currentTokenLocation().getByteOffset();
+            parser.skipChildren();
+            long to = parser.currentTokenLocation().getByteOffset() + 1;
+            if (to - from > Integer.MAX_VALUE) {
+                throw new IOException("book #" + slices.size + " is larger than 2 GB");
+            }
+            slices.add(from, (int) (to - from));
+        }
+        if (parser.currentToken() != JsonToken.END_ARRAY) {
+            throw new IOException("books must be an array of objects");
+        }
+    }
+
+    private Book[] decode(FileChannel channel, Slices slices) throws IOException {
+        Book[] books = new Book[slices.size];
+        int chunks = (slices.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        run(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int first = chunk * CHUNK_SIZE;
+            int end = Math.min(slices.size, first + CHUNK_SIZE);
+            int i = first;
+            try {
+                // the books of a chunk are consecutive in the file, so one read covers them
+                long base = slices.from[first];
+                long span = slices.from[end - 1] + slices.length[end - 1] - base;
+                if (span > Integer.MAX_VALUE) {
+                    throw new IOException("books #" + first + " to #" + (end - 1) + " span more than 2 GB");
+                }
+                byte[] data = read(channel, base, (int) span);
+                for (; i < end; i++) {
+                    books[i] = bookReader.readValue(data, (int) (slices.from[i] - base), slices.length[i]);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("book #" + i + ": " + e.getMessage(), e);
+            }
+        }));
+        return books;
+    }
+
+    // Positional reads do not move the channel's position, so chunks can read concurrently
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("file ends early");
+            }
+        }
+        return buffer.array();
+    }
+
+    // Runs the task inside the pool so parallel streams use its workers
+    private void run(Runnable task) throws IOException {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Failed to load library from file: interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to load library from file: " + e.getCause().getMessage());
+        }
+    }
+
+    private static long lap(Map<String, Long> phases, String phase, long since) {
+        long now = System.nanoTime();
+        phases.put(phase, now - since);
+        return now;
+    }
+
+    // Growable offset and length arrays, avoids one object per book during the scan
+    private static final class Slices {
+        long[] from = new long[1024];
+        int[] length = new int[1024];
+        int size;
+
+        void add(long start, int bytes) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                length = Arrays.copyOf(length, size * 2);
+            }
+            from[size] = start;
+            length[size] = bytes;
+            size++;
+        }
+    }
+
+    /*
+     * Loaded library plus how long each phase took
+     */
+    public static final class Result {
+        private final Library library;
+        private final int bookCount;
+        private final Map<String, Long> phaseNanos;
+        private final long totalNanos;
+
+        Result(Library library, int bookCount, Map<String, Long> phaseNanos, long totalNanos) {
+            this.library = library;
+            this.bookCount = bookCount;
+            this.phaseNanos = phaseNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        public Library getLibrary() {
+            return library;
+        }
+
+        // Number of book records in the file, before duplicate ISBNs are merged
+        public int getBookCount() {
+            return bookCount;
+        }
+
+        // Phase name to duration in milliseconds, in the order the phases ran
+        public Map<String, Long> getPhaseMillis() {
+            Map<String, Long> millis = new LinkedHashMap<>();
+            phaseNanos.forEach((phase, nanos) -> millis.put(phase, nanos / 1_000_000));
+            return millis;
+        }
+
+        public long getTotalMillis() {
+            return totalNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(bookCount).append(" books in ").append(getTotalMillis()).append(" ms (");
+            String separator = "";
+            for (Map.Entry<String, Long> phase : getPhaseMillis().entrySet()) {
+                out.append(separator).append(phase.getKey()).append(' ').append(phase.getValue()).append(" ms");
+                separator = ", ";
+            }
+            return out.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package util;
+
+import java.util.Arrays;
+
+/*
+ * Interning table that gives each distinct string a dense int id, 0, 1, 2, ... in first-seen
+ * order. Ids never change, so they can key a LongIntHashMap or index a plain array in place of
+ * a HashMap<String, ...>.
+ *
+ * Layout: the strings and their hash codes live in arrays indexed by id, and the hash table
+ * itself is an int[] of id + 1 (0 = empty) probed linearly. A probe compares cached hashes
+ * before calling equals, so a miss rarely touches a String at all.
+ *
+ * Entries are never removed, which keeps resizing simple and incremental: the old slot array
+ * stays valid as it is, new ids go into the larger one, and each intern copies a few old slots
+ * across until the old array can be dropped.
+ *
+ * Not thread-safe. idOf never throws while another thread interns, it can only miss, so a
+ * caller can read optimistically and validate afterwards (see model.BorrowerRegistry).
+ */
+public final class StringIdMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIGRATE_STEP = 16;
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] strings;
+    private int[] hashes;
+    private int size;
+
+    // id + 1 per slot, 0 = empty
+    private int[] slots;
+    private int threshold;
+    // previous slot array while it is being drained, otherwise null
+    private int[] retiring;
+    private int migrated;
+
+    public StringIdMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public StringIdMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        this.slots = new int[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+        this.strings = new String[Math.max(expectedSize, MIN_CAPACITY)];
+        this.hashes = new int[strings.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Id of the string, or -1 if it was never interned
+    public int idOf(String value) {
+        int hash = hash(value);
+        int id = find(slots, value, hash);
+        int[] old = retiring;
+        if (id < 0 && old != null) {
+            id = find(old, value, hash);
+        }
+        return id;
+    }
+
+    // Id of the string, assigning the next free id the first time it is seen
+    public int intern(String value) {
+        int id = idOf(value);
+        if (id >= 0) {
+            return id;
+        }
+        migrateStep();
+
+        id = size;
+        if (id == strings.length) {
+            strings = Arrays.copyOf(strings, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        int hash = hash(value);
+        strings[id] = value;
+        hashes[id] = hash;
+        size++;
+        insert(slots, id, hash);
+        if (size >= threshold) {
+            grow();
+        }
+        return id;
+    }
+
+    public String stringOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return strings[id];
+    }
+
+    /////////////////////////////////////Internals////////////////////////////////////
+
+    private int find(int[] table, String value, int hash) {
+        // read once: intern may swap in larger arrays while an optimistic reader is here
+        int[] knownHashes = hashes;
+        String[] knownStrings = strings;
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (id < knownHashes.length && id < knownStrings.length
+                && knownHashes[id] == hash && value.equals(knownStrings[id])) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static void insert(int[] table, int id, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private void grow() {
+        while (retiring != null) {
+            migrateStep();
+        }
+        retiring = slots;
+        migrated = 0;
+        slots = new int[retiring.length * 2];
+        threshold = (int) (slots.length * LOAD_FACTOR);
+        migrateStep();
+    }
+
+    private void migrateStep() {
+        int[] old = retiring;
+        if (old == null) {
+            return;
+        }
+        int end = Math.min(old.length, migrated + MIGRATE_STEP);
+        for (int slot = migrated; slot < end; slot++) {
+            int entry = old[slot];
+            if (entry != 0) {
+                int id = entry - 1;
+                if (find(slots, strings[id], hashes[id]) < 0) {
+                    insert(slots, id, hashes[id]);
+                }
+            }
+        }
+        migrated = end;
+        if (migrated == old.length) {
+            retiring = null;
+        }
+    }
+
+    private static int hash(String value) {
+        int h = value.hashCode();
+        // String.hashCode clusters for short similar names; mix before masking
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
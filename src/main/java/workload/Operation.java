@@ -0,0 +1,95 @@
+package workload;
+
+import java.util.Objects;
+
+/*
+ * One recorded request against a Library. A trace is a list of these, one per line:
+ *
+ *   SEARCH_TITLE,<title>
+ *   SEARCH_AUTHOR,<author>
+ *   SEARCH_ISBN,<isbn>
+ *   BORROW,<borrower>,<title>
+ *   RETURN,<borrower>,<title>
+ *
+ * Values are written as is, so they must not contain commas or line breaks.
+ */
+public final class Operation {
+
+    public enum Type { SEARCH_TITLE, SEARCH_AUTHOR, SEARCH_ISBN, BORROW, RETURN }
+
+    private final Type type;
+    // title, author or ISBN for searches, the title for borrow and return
+    private final String value;
+    // null for searches
+    private final String borrower;
+
+    private Operation(Type type, String value, String borrower) {
+        this.type = Objects.requireNonNull(type, "type");
+        this.value = check(value);
+        this.borrower = borrower == null ? null : check(borrower);
+    }
+
+    public static Operation searchTitle(String title) {
+        return new Operation(Type.SEARCH_TITLE, title, null);
+    }
+
+    public static Operation searchAuthor(String author) {
+        return new Operation(Type.SEARCH_AUTHOR, author, null);
+    }
+
+    public static Operation searchIsbn(String isbn) {
+        return new Operation(Type.SEARCH_ISBN, isbn, null);
+    }
+
+    public static Operation borrow(String borrower, String title) {
+        return new Operation(Type.BORROW, title, Objects.requireNonNull(borrower, "borrower"));
+    }
+
+    public static Operation returnBook(String borrower, String title) {
+        return new Operation(Type.RETURN, title, Objects.requireNonNull(borrower, "borrower"));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getBorrower() {
+        return borrower;
+    }
+
+    public String toLine() {
+        return borrower == null ? type + "," + value : type + "," + borrower + "," + value;
+    }
+
+    public static Operation parse(String line) {
+        String[] fields = line.split(",", -1);
+        Type type;
+        try {
+            type = Type.valueOf(fields[0].trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown operation: " + fields[0]);
+        }
+        boolean loan = type == Type.BORROW || type == Type.RETURN;
+        if (fields.length != (loan ? 3 : 2)) {
+            throw new IllegalArgumentException("Expected " + (loan ? 3 : 2) + " fields: " + line);
+        }
+        return loan ? new Operation(type, fields[2], fields[1]) : new Operation(type, fields[1], null);
+    }
+
+    private static String check(String field) {
+        Objects.requireNonNull(field, "value");
+        if (field.indexOf(',') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Trace values cannot contain commas or line breaks: " + field);
+        }
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return toLine();
+    }
+}
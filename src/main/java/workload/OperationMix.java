@@ -0,0 +1,90 @@
+package workload;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * Relative weights of each operation type in a generated trace, e.g. the default
+ * "title=50,author=15,isbn=15,borrow=12,return=8". Weights need not add up to 100.
+ */
+public final class OperationMix {
+
+    private static final String[] NAMES = { "title", "author", "isbn", "borrow", "return" };
+
+    private final Map<Operation.Type, Integer> weights;
+    private final int total;
+
+    private OperationMix(Map<Operation.Type, Integer> weights) {
+        this.weights = weights;
+        this.total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+    }
+
+    public static OperationMix defaults() {
+        return parse("title=50,author=15,isbn=15,borrow=12,return=8");
+    }
+
+    // Parses name=weight pairs; names are title, author, isbn, borrow and return
+    public static OperationMix parse(String spec) {
+        Map<Operation.Type, Integer> weights = new EnumMap<>(Operation.Type.class);
+        for (Operation.Type type : Operation.Type.values()) {
+            weights.put(type, 0);
+        }
+        for (String pair : spec.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight: " + pair);
+            }
+            int weight;
+            try {
+                weight = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Weight is not a number: " + pair);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + pair);
+            }
+            weights.put(typeOf(parts[0].trim()), weight);
+        }
+        return new OperationMix(weights);
+    }
+
+    public int weight(Operation.Type type) {
+        return weights.get(type);
+    }
+
+    Operation.Type pick(Random random) {
+        int roll = random.nextInt(total);
+        for (Map.Entry<Operation.Type, Integer> entry : weights.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("weights changed");
+    }
+
+    private static Operation.Type typeOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name)) {
+                return Operation.Type.values()[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + name + "', expected one of title, author, isbn, borrow, return");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Operation.Type type : Operation.Type.values()) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(NAMES[type.ordinal()]).append('=').append(weights.get(type));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,250 @@
+package workload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.Library;
+
+/*
+ * Replays a trace against a Library from a fixed number of threads and measures it.
+ *
+ * Searches are dealt round-robin to the threads. Borrows and returns go to the thread that owns
+ * the borrower, so each borrower's operations still run in trace order and a return never
+ * overtakes the borrow it belongs to. Books are shared, so borrowers still compete for them.
+ *
+ * Threads run closed-loop: each issues its next operation as soon as the previous one returns,
+ * which measures capacity rather than latency at a given arrival rate. Every operation is timed
+ * with System.nanoTime; the library's own checked exceptions (not found, not available, limit
+ * reached, ...) count as rejected, anything else as failed.
+ */
+public final class ReplayHarness {
+
+    private final int threads;
+
+    public ReplayHarness(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    public Result replay(Library library, List<Operation> trace) throws InterruptedException {
+        List<List<Operation>> partitions = partition(trace);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (List<Operation> partition : partitions) {
+                Worker worker = new Worker(library, partition);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return worker.call();
+                }));
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            List<Worker> workers = new ArrayList<>();
+            for (Future<Worker> future : futures) {
+                workers.add(future.get());
+            }
+            return new Result(threads, workers, System.nanoTime() - began);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay thread failed: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<List<Operation>> partition(List<Operation> trace) {
+        List<List<Operation>> partitions = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<>(trace.size() / threads + 1));
+        }
+        int next = 0;
+        for (Operation operation : trace) {
+            int owner = operation.getBorrower() != null
+                ? Math.floorMod(operation.getBorrower().hashCode(), threads)
+                : next++ % threads;
+            partitions.get(owner).add(operation);
+        }
+        return partitions;
+    }
+
+    private static final class Worker implements Callable<Worker> {
+        private final Library library;
+        private final List<Operation> operations;
+        final long[] nanos;
+        final Operation.Type[] types;
+        long rejected;
+        long failed;
+
+        Worker(Library library, List<Operation> operations) {
+            this.library = library;
+            this.operations = operations;
+            this.nanos = new long[operations.size()];
+            this.types = new Operation.Type[operations.size()];
+        }
+
+        @Override
+        public Worker call() {
+            for (int i = 0; i < operations.size(); i++) {
+                Operation operation = operations.get(i);
+                long t = System.nanoTime();
+                try {
+                    execute(operation);
+                } catch (RuntimeException e) {
+                    failed++;
+                } catch (Exception e) {
+                    rejected++;
+                }
+                nanos[i] = System.nanoTime() - t;
+                types[i] = operation.getType();
+            }
+            return this;
+        }
+
+        private void execute(Operation operation) throws Exception {
+            switch (operation.getType()) {
+                case SEARCH_TITLE:
+                    library.findBookByTitle(operation.getValue());
+                    break;
+                case SEARCH_AUTHOR:
+                    library.findBookByAuthor(operation.getValue());
+                    break;
+                case SEARCH_ISBN:
+                    library.findBookByISBN(operation.getValue());
+                    break;
+                case BORROW:
+                    library.borrowBook(operation.getValue(), operation.getBorrower());
+                    break;
+                case RETURN:
+                    library.returnBook(operation.getValue(), operation.getBorrower());
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled operation " + operation.getType());
+            }
+        }
+    }
+
+    /*
+     * Throughput, outcome counts and latency percentiles of one replay
+     */
+    public static final class Result {
+        private final int threads;
+        private final long operations;
+        private final long rejected;
+        private final long failed;
+        private final long elapsedNanos;
+        // sorted latencies, overall and per operation type
+        private final long[] latencies;
+        private final Map<Operation.Type, long[]> latenciesByType = new EnumMap<>(Operation.Type.class);
+
+        Result(int threads, List<Worker> workers, long elapsedNanos) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            long total = 0;
+            long rejectedCount = 0;
+            long failedCount = 0;
+            Map<Operation.Type, Integer> perType = new EnumMap<>(Operation.Type.class);
+            for (Worker worker : workers) {
+                total += worker.nanos.length;
+                rejectedCount += worker.rejected;
+                failedCount += worker.failed;
+                for (Operation.Type type : worker.types) {
+                    perType.merge(type, 1, Integer::sum);
+                }
+            }
+            this.operations = total;
+            this.rejected = rejectedCount;
+            this.failed = failedCount;
+
+            this.latencies = new long[(int) total];
+            Map<Operation.Type, Integer> filled = new EnumMap<>(Operation.Type.class);
+            perType.forEach((type, count) -> {
+                latenciesByType.put(type, new long[count]);
+                filled.put(type, 0);
+            });
+            int at = 0;
+            for (Worker worker : workers) {
+                System.arraycopy(worker.nanos, 0, latencies, at, worker.nanos.length);
+                at += worker.nanos.length;
+                for (int i = 0; i < worker.nanos.length; i++) {
+                    int slot = filled.merge(worker.types[i], 1, Integer::sum) - 1;
+                    latenciesByType.get(worker.types[i])[slot] = worker.nanos[i];
+                }
+            }
+            Arrays.sort(latencies);
+            latenciesByType.values().forEach(Arrays::sort);
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        // Operations the library refused, e.g. borrowing a book that is already out
+        public long getRejected() {
+            return rejected;
+        }
+
+        // Operations that threw an unexpected runtime exception
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+        }
+
+        // Latency in nanoseconds at the given percentile (0 to 100) over all operations
+        public long percentile(double percentile) {
+            return percentile(latencies, percentile);
+        }
+
+        // Same for one operation type, 0 if the trace had none
+        public long percentile(Operation.Type type, double percentile) {
+            long[] sorted = latenciesByType.get(type);
+            return sorted == null ? 0 : percentile(sorted, percentile);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            // nearest-rank definition
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%d threads: %d ops in %d ms, %.0f ops/s, %d rejected, %d failed%n",
+                threads, operations, elapsedNanos / 1_000_000, getThroughput(), rejected, failed));
+            out.append(String.format("  %-13s %10s %10s %10s%n", "latency (us)", "p50", "p99", "p999"));
+            out.append(row("all", latencies));
+            latenciesByType.forEach((type, sorted) -> out.append(row(type.name(), sorted)));
+            return out.toString();
+        }
+
+        private static String row(String name, long[] sorted) {
+            return String.format("  %-13s %10.1f %10.1f %10.1f%n", name,
+                percentile(sorted, 50) / 1e3, percentile(sorted, 99) / 1e3, percentile(sorted, 99.9) / 1e3);
+        }
+    }
+}
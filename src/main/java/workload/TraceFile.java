@@ -0,0 +1,52 @@
+package workload;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Reads and writes operation traces, one Operation line per line (see Operation).
+ * Blank lines and lines starting with # are ignored on read.
+ */
+public final class TraceFile {
+
+    private TraceFile() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static void write(List<Operation> trace, String fileName) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            for (Operation operation : trace) {
+                writer.write(operation.toLine());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to write trace: " + e.getMessage());
+        }
+    }
+
+    public static List<Operation> read(String fileName) throws IOException {
+        List<Operation> trace = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    trace.add(Operation.parse(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid operation on line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,162 @@
+package workload;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import model.Book;
+
+/*
+ * Generates synthetic catalogs and operation traces that look like library traffic.
+ *
+ * Authors and genres are Zipf-distributed: a few authors write many of the books and a few
+ * genres hold most of the catalog. Demand is Zipf-distributed too: each book gets a popularity
+ * rank, shuffled so that it does not follow ISBN order, and searches and borrows pick titles by
+ * that rank. The trace keeps track of who holds what, so returns give back books that were
+ * actually borrowed earlier in the trace.
+ *
+ * Everything is derived from the seed, so the same arguments always produce the same workload.
+ */
+public final class WorkloadGenerator {
+
+    public static final double DEFAULT_SKEW = 1.0;
+    static final int BOOKS_PER_AUTHOR = 20;
+    static final int MAX_GENRES = 40;
+
+    private final long seed;
+    private final double skew;
+
+    public WorkloadGenerator(long seed) {
+        this(seed, DEFAULT_SKEW);
+    }
+
+    // skew is the Zipf exponent: 0 is uniform, around 1 is typical of real catalogs
+    public WorkloadGenerator(long seed, double skew) {
+        this.seed = seed;
+        this.skew = skew;
+    }
+
+    // Available books with unique titles "Title <n>" and valid, unique ISBN-13s
+    public List<Book> catalog(int books) {
+        Random random = new Random(seed);
+        int authors = Math.max(1, books / BOOKS_PER_AUTHOR);
+        int genres = Math.min(MAX_GENRES, Math.max(1, books / 10));
+        ZipfDistribution authorRank = new ZipfDistribution(authors, skew);
+        ZipfDistribution genreRank = new ZipfDistribution(genres, skew);
+
+        List<Book> catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            Book book = new Book("Title " + i,
+                "Author " + authorRank.sample(random),
+                "Genre " + genreRank.sample(random),
+                isbn13(i),
+                1900 + random.nextInt(125));
+            // Library.loadSnapshot keeps availability as given
+            book.setIsAvailable(true);
+            catalog.add(book);
+        }
+        return catalog;
+    }
+
+    // A trace of the given length against the catalog, spread over borrowers "Borrower <n>"
+    public List<Operation> trace(List<Book> catalog, int operations, int borrowers, OperationMix mix) {
+        if (catalog.isEmpty()) {
+            throw new IllegalArgumentException("catalog is empty");
+        }
+        if (borrowers <= 0) {
+            throw new IllegalArgumentException("borrowers must be positive");
+        }
+        Random random = new Random(seed + 1);
+        Book[] byPopularity = catalog.toArray(new Book[0]);
+        for (int i = byPopularity.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Book swap = byPopularity[i];
+            byPopularity[i] = byPopularity[j];
+            byPopularity[j] = swap;
+        }
+        ZipfDistribution demand = new ZipfDistribution(byPopularity.length, skew);
+        Loans loans = new Loans();
+
+        List<Operation> trace = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            Book book = byPopularity[demand.sample(random)];
+            Operation.Type type = mix.pick(random);
+            if (type == Operation.Type.RETURN && loans.isEmpty()) {
+                // nothing is out yet; an early return would only be rejected
+                type = Operation.Type.BORROW;
+            }
+            switch (type) {
+                case SEARCH_TITLE:
+                    trace.add(Operation.searchTitle(book.getTitle()));
+                    break;
+                case SEARCH_AUTHOR:
+                    trace.add(Operation.searchAuthor(book.getAuthor()));
+                    break;
+                case SEARCH_ISBN:
+                    trace.add(Operation.searchIsbn(book.getISBN()));
+                    break;
+                case BORROW:
+                    String borrower = "Borrower " + random.nextInt(borrowers);
+                    trace.add(Operation.borrow(borrower, book.getTitle()));
+                    loans.borrow(borrower, book.getTitle());
+                    break;
+                case RETURN:
+                    trace.add(loans.returnAny(random));
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled operation " + type);
+            }
+        }
+        return trace;
+    }
+
+    // 978 prefix, nine digits from the index and the ISBN-13 check digit
+    static String isbn13(int index) {
+        String digits = String.format("978%09d", index);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    // Outstanding loans while generating, so returns refer to books that are really out
+    private static final class Loans {
+        private final Set<String> onLoan = new HashSet<>();
+        private final Map<String, List<String>> byBorrower = new HashMap<>();
+        // borrowers holding at least one book, for picking one in O(1)
+        private final List<String> holders = new ArrayList<>();
+
+        boolean isEmpty() {
+            return holders.isEmpty();
+        }
+
+        void borrow(String borrower, String title) {
+            if (!onLoan.add(title)) {
+                // someone else has it; the replayed borrow will be rejected
+                return;
+            }
+            List<String> titles = byBorrower.computeIfAbsent(borrower, name -> new ArrayList<>());
+            if (titles.isEmpty()) {
+                holders.add(borrower);
+            }
+            titles.add(title);
+        }
+
+        Operation returnAny(Random random) {
+            int index = random.nextInt(holders.size());
+            String borrower = holders.get(index);
+            List<String> titles = byBorrower.get(borrower);
+            String title = titles.remove(random.nextInt(titles.size()));
+            onLoan.remove(title);
+            if (titles.isEmpty()) {
+                holders.set(index, holders.get(holders.size() - 1));
+                holders.remove(holders.size() - 1);
+            }
+            return Operation.returnBook(borrower, title);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package workload;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.Book;
+import model.Library;
+import util.FileUtils;
+import util.SnapshotLoader;
+
+/*
+ * Command line entry point for the workload tools, run with
+ *
+ *   mvn -Pworkload compile exec:java -Dexec.args="<command> [--option value ...]"
+ *
+ * Commands:
+ *   generate  write a catalog (library JSON) and a trace (one operation per line)
+ *             --books 100000 --ops 1000000 --borrowers 5000 --mix <spec> --skew 1.0 --seed 42
+ *             --catalog workload-library.json --trace workload-trace.csv
+ *   replay    replay a trace against a catalog file, once per thread count
+ *             --catalog workload-library.json --trace workload-trace.csv --threads 1,2,4,8
+ *   run       generate in memory and replay, no files; takes the options of both
+ *
+ * The mix spec is a list of weights such as title=50,author=15,isbn=15,borrow=12,return=8.
+ * Every replay starts from a freshly loaded catalog, so runs at different thread counts see
+ * the same starting state.
+ */
+public final class WorkloadTool {
+
+    private WorkloadTool() {
+        throw new UnsupportedOperationException("Command line entry point");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Map<String, String> options;
+        try {
+            options = options(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            usage();
+            return;
+        }
+        switch (args[0]) {
+            case "generate":
+                generate(options);
+                break;
+            case "replay":
+                replay(options);
+                break;
+            case "run":
+                run(options);
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void generate(Map<String, String> options) throws IOException {
+        WorkloadGenerator generator = generator(options);
+        List<Book> catalog = generator.catalog(intOption(options, "books", 100_000));
+        List<Operation> trace = trace(generator, catalog, options);
+
+        Library library = new Library();
+        library.loadSnapshot(catalog.toArray(new Book[0]), new HashMap<>());
+        String catalogFile = options.getOrDefault("catalog", "workload-library.json");
+        String traceFile = options.getOrDefault("trace", "workload-trace.csv");
+        FileUtils.saveLibraryToFile(library, catalogFile);
+        TraceFile.write(trace, traceFile);
+        System.out.println("Wrote " + catalog.size() + " books to " + catalogFile
+            + " and " + trace.size() + " operations to " + traceFile);
+    }
+
+    private static void replay(Map<String, String> options) throws Exception {
+        String catalogFile = options.getOrDefault("catalog", "workload-library.json");
+        List<Operation> trace = TraceFile.read(options.getOrDefault("trace", "workload-trace.csv"));
+        for (int threads : threadCounts(options)) {
+            Library library = new SnapshotLoader().load(catalogFile).getLibrary();
+            System.out.print(new ReplayHarness(threads).replay(library, trace));
+        }
+    }
+
+    private static void run(Map<String, String> options) throws Exception {
+        WorkloadGenerator generator = generator(options);
+        int books = intOption(options, "books", 100_000);
+        List<Operation> trace = trace(generator, generator.catalog(books), options);
+        System.out.println(books + " books, " + trace.size() + " operations, mix "
+            + options.getOrDefault("mix", OperationMix.defaults().toString()));
+        for (int threads : threadCounts(options)) {
+            // Books carry their availability, so every replay gets its own copies
+            Library library = new Library();
+            library.loadSnapshot(generator.catalog(books).toArray(new Book[0]), new HashMap<>());
+            System.out.print(new ReplayHarness(threads).replay(library, trace));
+        }
+    }
+
+    private static WorkloadGenerator generator(Map<String, String> options) {
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", String.valueOf(WorkloadGenerator.DEFAULT_SKEW)));
+        return new WorkloadGenerator(seed, skew);
+    }
+
+    private static List<Operation> trace(WorkloadGenerator generator, List<Book> catalog, Map<String, String> options) {
+        OperationMix mix = options.containsKey("mix") ? OperationMix.parse(options.get("mix")) : OperationMix.defaults();
+        return generator.trace(catalog, intOption(options, "ops", 1_000_000), intOption(options, "borrowers", 5_000), mix);
+    }
+
+    private static List<Integer> threadCounts(Map<String, String> options) {
+        List<Integer> counts = new ArrayList<>();
+        String spec = options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        for (String count : spec.split(",")) {
+            counts.add(Integer.parseInt(count.trim()));
+        }
+        return counts;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: generate | replay | run [--books N] [--ops N] [--borrowers N] [--mix spec]");
+        System.out.println("       [--skew S] [--seed N] [--catalog file] [--trace file] [--threads 1,2,4]");
+    }
+}
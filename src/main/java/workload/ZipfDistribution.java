@@ -0,0 +1,46 @@
+package workload;
+
+import java.util.Random;
+
+/*
+ * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent, so rank 0
+ * is the most popular. The cumulative distribution is computed once and sampled by binary
+ * search, which keeps sampling O(log n) for any exponent.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("exponent must not be negative");
+        }
+        cumulative = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    int sample(Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,151 @@
+package archive;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import workload.WorkloadGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveFileTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+
+    private final List<Book> books = new WorkloadGenerator(3).catalog(500);
+
+    // 2 blocks of one-day loans per year, in time order, over the first 400 books
+    private int writeYears(ArchiveFile archive, int fromYear, int toYear, Book counted, int countedYear) throws Exception {
+        int count = 0;
+        for (int year = fromYear; year <= toYear; year++) {
+            long start = LocalDate.of(year, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            for (int i = 0; i < 2 * ArchiveFile.BLOCK_RECORDS; i++) {
+                Book book = books.get(i % 400);
+                long borrowedAt = start + i * HOUR;
+                archive.append(ArchiveRecord.loan(book, "Reader " + i, borrowedAt, borrowedAt + DAY));
+                if (year == countedYear && book == counted) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    void queriesReadOnlyTheBlocksThatCanMatch(@TempDir Path tmp) throws Exception {
+        Book dune = books.get(42);
+        Path file = tmp.resolve("archive.dat");
+        int expected2023;
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            expected2023 = writeYears(archive, 2022, 2024, dune, 2023);
+            archive.append(ArchiveRecord.removedBook(books.get(499), System.currentTimeMillis()));
+            assertEquals(6, archive.getBlockCount(), "The last record is still buffered");
+        }
+
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            assertEquals(7, archive.getBlockCount());
+            assertEquals(3 * 2 * ArchiveFile.BLOCK_RECORDS + 1, archive.getRecordCount());
+
+            List<ArchiveRecord> loans = archive.loansOf(dune.getISBN(), 2023);
+            assertEquals(expected2023, loans.size());
+            assertTrue(loans.stream().allMatch(r -> r.getTitle().equals(dune.getTitle())));
+            assertTrue(archive.getBlocksRead() <= 2, "Only the 2023 blocks should be read, read " + archive.getBlocksRead());
+
+            long before = archive.getBlocksRead();
+            assertTrue(archive.loansOf(books.get(450).getISBN(), 2023).isEmpty(), "Never borrowed");
+            assertTrue(archive.getBlocksRead() - before <= 1, "The Bloom filters should rule out nearly every block");
+
+            List<ArchiveRecord> removed = archive.find(ArchiveRecord.Type.REMOVED_BOOK, -1, 0, Long.MAX_VALUE);
+            assertEquals(Arrays.asList(books.get(499).getISBN()), Arrays.asList(removed.get(0).getISBN()));
+            assertEquals(1, removed.size());
+        }
+    }
+
+    @Test
+    void tornTailBlockIsTruncatedOnOpen(@TempDir Path tmp) throws Exception {
+        Path file = tmp.resolve("archive.dat");
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            writeYears(archive, 2022, 2023, null, 0);
+        }
+        long intact;
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            assertEquals(4, archive.getBlockCount());
+            archive.flush();
+            intact = Files.size(file);
+            archive.append(ArchiveRecord.removedBook(books.get(0), System.currentTimeMillis()));
+        }
+        // a crash in the middle of writing the last block
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 10);
+        }
+
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            assertEquals(4, archive.getBlockCount());
+            assertEquals(4 * ArchiveFile.BLOCK_RECORDS, archive.getRecordCount());
+            assertEquals(intact, Files.size(file), "The torn block is cut off");
+            assertTrue(archive.find(ArchiveRecord.Type.REMOVED_BOOK, -1, 0, Long.MAX_VALUE).isEmpty());
+
+            // and the file stays appendable
+            archive.append(ArchiveRecord.removedBook(books.get(1), System.currentTimeMillis()));
+        }
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            assertEquals(5, archive.getBlockCount());
+            assertEquals(books.get(1).getISBN(),
+                archive.find(ArchiveRecord.Type.REMOVED_BOOK, -1, 0, Long.MAX_VALUE).get(0).getISBN());
+        }
+    }
+
+    @Test
+    void blockWithABadChecksumIsTruncatedOnOpen(@TempDir Path tmp) throws Exception {
+        Path file = tmp.resolve("archive.dat");
+        long intact;
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            writeYears(archive, 2022, 2022, null, 0);
+            archive.flush();
+            intact = Files.size(file);
+            archive.append(ArchiveRecord.removedBook(books.get(0), System.currentTimeMillis()));
+        }
+        // the header made it to disk but the last payload byte did not
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) ~last.get(0));
+            channel.write(last.flip(), channel.size() - 1);
+        }
+
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            assertEquals(2, archive.getBlockCount());
+            assertEquals(2 * ArchiveFile.BLOCK_RECORDS, archive.getRecordCount());
+            assertEquals(intact, Files.size(file), "The corrupt block is cut off");
+            assertTrue(archive.find(ArchiveRecord.Type.REMOVED_BOOK, -1, 0, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    void stringsLongerThan64KbRoundTrip(@TempDir Path tmp) throws Exception {
+        Path file = tmp.resolve("archive.dat");
+        StringBuilder title = new StringBuilder();
+        while (title.length() < 100_000) {
+            title.append("A very long title \u00e9\u6f22 ");
+        }
+        Book book = new Book(title.toString(), "Author", "Genre", "978-0132350884", 2008);
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            archive.append(ArchiveRecord.loan(book, "Reader", 1, 2));
+        }
+        try (ArchiveFile archive = ArchiveFile.open(file)) {
+            List<ArchiveRecord> found = archive.find(ArchiveRecord.Type.LOAN, -1, 0, Long.MAX_VALUE);
+            assertEquals(1, found.size());
+            assertEquals(title.toString(), found.get(0).getTitle());
+            assertEquals("Reader", found.get(0).getBorrower());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package archive;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import model.Book;
+import model.Library;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryArchiverTest {
+
+    @Test
+    void returnsAndRemovalsBecomeRecords(@TempDir Path tmp) throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        lib.addBook(new Book("Emma", "Jane Austen", "Classic", "9780141439587", 1815));
+        lib.borrowBook("Emma", "Grace");
+
+        LibraryArchiver archiver = LibraryArchiver.attach(lib, ArchiveFile.open(tmp.resolve("archive.dat")));
+        lib.borrowBook("Dune", "Ada");
+        lib.returnBook("Dune", "Ada");
+        lib.returnBook("Emma", "Grace");
+        lib.removeBook("9780441013593");
+        archiver.close();
+
+        try (ArchiveFile archive = ArchiveFile.open(tmp.resolve("archive.dat"))) {
+            List<ArchiveRecord> history = archive.find(null, -1, 0, Long.MAX_VALUE);
+            assertEquals(3, history.size());
+            assertEquals("Ada", history.get(0).getBorrower());
+            assertTrue(history.get(0).getStartedAt() > 0, "The loan started after the archiver was attached");
+            assertEquals("Grace", history.get(1).getBorrower());
+            assertEquals(-1, history.get(1).getStartedAt(), "The loan was open before archiving began");
+            assertEquals(ArchiveRecord.Type.REMOVED_BOOK, history.get(2).getType());
+            assertNull(history.get(2).getBorrower());
+        }
+    }
+
+    @Test
+    void noHistoryIsLostWhenTheArchiverFallsARingBehind(@TempDir Path tmp) throws Exception {
+        int loans = 10_000;
+        // LibraryEventPublisher.DEFAULT_CAPACITY, less than the 2 * loans events below
+        int ring = 1 << 14;
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        ArchiveFile archive = ArchiveFile.open(tmp.resolve("archive.dat"));
+        LibraryArchiver archiver = LibraryArchiver.attach(lib, archive);
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        Thread circulation = new Thread(() -> {
+            try {
+                for (int i = 0; i < loans; i++) {
+                    lib.borrowBook("Dune", "Borrower " + i);
+                    lib.returnBook("Dune", "Borrower " + i);
+                }
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        });
+
+        // while the test holds the archive's lock the archiver cannot write, so the event ring
+        // fills up and the circulation thread has to wait for it
+        long start = lib.events().getNextSequence();
+        synchronized (archive) {
+            circulation.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (lib.events().getNextSequence() - start <= ring
+                && circulation.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            long claimed = lib.events().getNextSequence();
+            Thread.sleep(50);
+            assertTrue(circulation.isAlive(), "Circulation waits for the archiver");
+            assertEquals(claimed, lib.events().getNextSequence(), "No event is published past the ring");
+        }
+        circulation.join(30_000);
+        assertFalse(circulation.isAlive());
+        assertTrue(failures.isEmpty(), failures.toString());
+        archiver.close();
+
+        try (ArchiveFile reopened = ArchiveFile.open(tmp.resolve("archive.dat"))) {
+            List<ArchiveRecord> history = reopened.find(ArchiveRecord.Type.LOAN, -1, 0, Long.MAX_VALUE);
+            assertEquals(loans, history.size(), "More events than the ring holds, yet every loan is archived");
+            assertEquals("Borrower " + (loans - 1), history.get(loans - 1).getBorrower());
+        }
+    }
+
+    @Test
+    void historyIsFlushedWithoutWaitingForAFullBlock(@TempDir Path tmp) throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        ArchiveFile archive = ArchiveFile.open(tmp.resolve("archive.dat"));
+        LibraryArchiver archiver = LibraryArchiver.attach(lib, archive, 10);
+
+        lib.borrowBook("Dune", "Ada");
+        lib.returnBook("Dune", "Ada");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (archive.getBlockCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, archive.getBlockCount(), "The timed flush writes the one record as a short block");
+        archiver.close();
+        assertEquals(1, archive.getBlockCount(), "Nothing was left to write on close");
+    }
+}
@@ -0,0 +1,54 @@
+package model;
+
+/*
+ * Throughput of concurrent circulation (see CirculationStress) from 1 to N threads.
+ * Not a unit test; run it by hand against the test classpath:
+ *
+ *   mvn -q test-compile
+ *   java -cp target/classes:target/test-classes:<jackson jars> model.CirculationBenchmark 8 200000
+ *
+ * Arguments are the highest thread count (default: available processors, at least 4) and the
+ * operations per thread. Thread counts double from 1 up to the highest, after one untimed run at
+ * the highest count to warm up the JIT. Each count gets a fresh library, a short warm-up run and
+ * a measured run. Measured runs must finish without invariant violations (the exit status is 1
+ * otherwise), so the table doubles as a correctness gate for a concurrent Library. Speedup is
+ * relative to one thread and is only meaningful with at least that many free cores.
+ */
+public final class CirculationBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final int BORROWERS = 1_000;
+
+    private CirculationBenchmark() {
+        throw new UnsupportedOperationException("Benchmark entry point");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        System.out.println(BOOKS + " books, " + BORROWERS + " borrowers, " + operations + " operations per thread, "
+            + Runtime.getRuntime().availableProcessors() + " processors");
+
+        // compile the hot paths before the one-thread baseline is taken
+        new CirculationStress(BOOKS, BORROWERS, 0).run(maxThreads, operations, 0);
+
+        double baseline = 0;
+        boolean clean = true;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            CirculationStress stress = new CirculationStress(BOOKS, BORROWERS, threads);
+            stress.run(threads, operations / 4, 1);
+            CirculationStress.Result result = stress.run(threads, operations, 2);
+            if (threads == 1) {
+                baseline = result.throughput();
+            }
+            System.out.printf("%s, speedup %.2fx%n", result, result.throughput() / baseline);
+            for (String violation : result.violations) {
+                System.out.println("  " + violation);
+            }
+            clean &= result.violations.isEmpty();
+        }
+        if (!clean) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import exception.BookAlreadyExistsException;
+import exception.BookNotAvailableException;
+import exception.BookNotBorrowedException;
+import exception.BookNotFoundException;
+import exception.BorrowLimitExceededException;
+import workload.WorkloadGenerator;
+
+/*
+ * Randomized multithreaded hammer for Library, shared by LibraryServiceTest (as a correctness
+ * gate) and CirculationBenchmark (for throughput scaling).
+ *
+ * Worker threads borrow, return, add, remove and look up books drawn from a fixed pool of
+ * candidates, a quarter of which start outside the catalog so adds and removes keep succeeding.
+ * Every borrower gets a small loan limit so the limit is hit constantly, and borrowers are
+ * shared between threads so loans of one borrower race each other.
+ *
+ * The workers share a shadow of who holds which book: a successful borrow must find the book's
+ * shadow slot free, a return is only made by the worker that claimed the slot, and returns by a
+ * borrower who never borrows must always be refused. The shadow is cleared before a return and
+ * set after a borrow, so it never claims more loans than the library has.
+ *
+ * A checker thread takes the library lock now and then while the workers run and verifies the
+ * catalog, the borrower lists and the borrower loan counters against each other. The same
+ * check runs again when the workers are done, together with a comparison of the shadow and
+ * the counts of successful adds and removes.
+ *
+ * Anything that does not add up is recorded as a violation rather than thrown, so one run
+ * reports every problem it saw.
+ */
+final class CirculationStress {
+
+    static final int LOAN_LIMIT = 2;
+    private static final String TIER = "stress";
+    private static final int CHECK_INTERVAL_MILLIS = 5;
+    private static final int MAX_VIOLATIONS = 100;
+    // never borrows, so every return in this name must be refused
+    private static final String STRANGER = "Nobody";
+    private static final int NOT_LENT = -1;
+
+    private final Library library;
+    private final List<Book> candidates;
+    private final String[] borrowerNames;
+    // borrower index each candidate is lent to, per the workers' shadow
+    private final AtomicIntegerArray holders;
+    // loans per borrower, per the shadow
+    private final AtomicIntegerArray shadowLoans;
+    private final int initialBooks;
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+    // A library with three quarters of `books` candidates in its catalog
+    CirculationStress(int books, int borrowers, long seed) throws BookAlreadyExistsException {
+        this.library = new Library();
+        this.candidates = new WorkloadGenerator(seed).catalog(books);
+        this.initialBooks = books - books / 4;
+        this.library.addBooks(new ArrayList<>(candidates.subList(0, initialBooks)));
+        this.library.borrowers().defineTier(TIER, LOAN_LIMIT);
+        this.library.borrowers().setDefaultTier(TIER);
+        this.borrowerNames = new String[borrowers];
+        for (int i = 0; i < borrowers; i++) {
+            borrowerNames[i] = "Borrower " + i;
+        }
+        this.holders = new AtomicIntegerArray(books);
+        for (int i = 0; i < books; i++) {
+            holders.set(i, NOT_LENT);
+        }
+        this.shadowLoans = new AtomicIntegerArray(borrowers);
+    }
+
+    Library getLibrary() {
+        return library;
+    }
+
+    // Runs `threads` workers of `operations` random operations each, then checks the end state
+    Result run(int threads, int operations, long seed) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong succeeded = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed * 31 + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long ok = 0;
+                    for (int i = 0; i < operations; i++) {
+                        if (step(random)) {
+                            ok++;
+                        }
+                    }
+                    succeeded.addAndGet(ok);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    violation("Worker failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            }, "circulation-" + t);
+            worker.start();
+        }
+
+        Thread checker = new Thread(() -> {
+            try {
+                while (!done.await(CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkLibrary();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "circulation-checker");
+        checker.start();
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        checker.join();
+
+        checkLibrary();
+        checkShadow();
+        return new Result(threads, (long) threads * operations, succeeded.get(), elapsed, new ArrayList<>(violations));
+    }
+
+    // One random operation; true if the library accepted it
+    private boolean step(Random random) {
+        int index = random.nextInt(candidates.size());
+        Book candidate = candidates.get(index);
+        int roll = random.nextInt(100);
+        try {
+            if (roll < 40) {
+                return borrow(index, random.nextInt(borrowerNames.length));
+            } else if (roll < 75) {
+                return giveBack(index);
+            } else if (roll < 85) {
+                library.addBook(copyOf(candidate));
+                added.incrementAndGet();
+            } else if (roll < 95) {
+                library.removeBook(candidate.getISBN());
+                removed.incrementAndGet();
+            } else {
+                Book found = library.findBookByISBN(candidate.getISBN());
+                if (!found.getTitle().equals(candidate.getTitle())) {
+                    violation("ISBN " + candidate.getISBN() + " found " + found.getTitle());
+                }
+            }
+            return true;
+        } catch (BookNotFoundException | BookAlreadyExistsException e) {
+            // the candidate is in the other state; expected
+            return false;
+        }
+    }
+
+    private boolean borrow(int index, int borrower) throws BookNotFoundException {
+        String title = candidates.get(index).getTitle();
+        String name = borrowerNames[borrower];
+        try {
+            library.borrowBook(title, name);
+        } catch (BookNotAvailableException | BorrowLimitExceededException e) {
+            return false;
+        }
+        int previous = holders.getAndSet(index, borrower);
+        if (previous != NOT_LENT) {
+            violation(title + " lent to " + name + " while " + borrowerNames[previous] + " still has it");
+        }
+        int loans = shadowLoans.incrementAndGet(borrower);
+        if (loans > LOAN_LIMIT) {
+            violation(name + " holds " + loans + " books, the limit is " + LOAN_LIMIT);
+        }
+        return true;
+    }
+
+    private boolean giveBack(int index) throws BookNotFoundException {
+        String title = candidates.get(index).getTitle();
+        int holder = holders.get(index);
+        if (holder == NOT_LENT) {
+            try {
+                library.returnBook(title, STRANGER);
+                violation(title + " returned by " + STRANGER + " who never borrowed it");
+                return true;
+            } catch (BookNotBorrowedException e) {
+                return false;
+            }
+        }
+        // claim the return so no other worker returns the same loan
+        if (!holders.compareAndSet(index, holder, NOT_LENT)) {
+            return false;
+        }
+        shadowLoans.decrementAndGet(holder);
+        String name = borrowerNames[holder];
+        try {
+            library.returnBook(title, name);
+            return true;
+        } catch (BookNotBorrowedException e) {
+            violation(title + " could not be returned by its holder " + name + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Checks the library against itself with its lock held
+    void checkLibrary() {
+        synchronized (library) {
+            List<Book> catalog = library.getAllBooks();
+            if (catalog.size() != library.getTotalBookCount()) {
+                violation("Catalog has " + catalog.size() + " books, total count says " + library.getTotalBookCount());
+            }
+            Map<String, List<Book>> report = library.getBorrowerReport();
+            Map<Book, String> lentTo = new IdentityHashMap<>();
+            for (Map.Entry<String, List<Book>> entry : report.entrySet()) {
+                String name = entry.getKey();
+                List<Book> books = entry.getValue();
+                if (books.isEmpty()) {
+                    violation(name + " is listed with no books");
+                }
+                for (Book book : books) {
+                    String other = lentTo.put(book, name);
+                    if (other != null) {
+                        violation(book.getTitle() + " is lent to both " + other + " and " + name);
+                    }
+                    if (book.isAvailable()) {
+                        violation(book.getTitle() + " is lent to " + name + " but marked available");
+                    }
+                }
+                Borrower borrower = library.borrowers().find(name);
+                if (borrower == null) {
+                    violation(name + " has loans but is not registered");
+                } else if (borrower.getActiveLoans() != books.size()) {
+                    violation(name + " has " + books.size() + " books but a loan count of " + borrower.getActiveLoans());
+                }
+                if (books.size() > LOAN_LIMIT) {
+                    violation(name + " has " + books.size() + " books, the limit is " + LOAN_LIMIT);
+                }
+            }
+            int unavailable = 0;
+            for (Book book : catalog) {
+                if (!book.isAvailable()) {
+                    unavailable++;
+                    if (!lentTo.containsKey(book)) {
+                        violation(book.getTitle() + " is unavailable but nobody has it");
+                    }
+                }
+            }
+            if (unavailable != lentTo.size() || library.getNumberOfBorrowedBooks() != lentTo.size()) {
+                violation(unavailable + " unavailable books, " + lentTo.size() + " lent, borrowed count "
+                    + library.getNumberOfBorrowedBooks());
+            }
+            for (Borrower borrower : library.borrowers().borrowers()) {
+                if (!report.containsKey(borrower.getName()) && borrower.getActiveLoans() != 0) {
+                    violation(borrower.getName() + " has no books but a loan count of " + borrower.getActiveLoans());
+                }
+            }
+        }
+    }
+
+    // With the workers stopped, the shadow and the library must agree exactly
+    private void checkShadow() {
+        long expected = initialBooks + added.get() - removed.get();
+        if (library.getTotalBookCount() != expected) {
+            violation(library.getTotalBookCount() + " books, expected " + expected + " from the adds and removes");
+        }
+        Map<String, List<Book>> report = library.getBorrowerReport();
+        int[] lent = new int[borrowerNames.length];
+        for (int i = 0; i < candidates.size(); i++) {
+            int holder = holders.get(i);
+            if (holder == NOT_LENT) {
+                continue;
+            }
+            lent[holder]++;
+            String title = candidates.get(i).getTitle();
+            List<Book> books = report.get(borrowerNames[holder]);
+            if (books == null || books.stream().noneMatch(book -> book.getTitle().equals(title))) {
+                violation(title + " should be lent to " + borrowerNames[holder]);
+            }
+        }
+        for (int i = 0; i < borrowerNames.length; i++) {
+            List<Book> books = report.get(borrowerNames[i]);
+            int actual = books == null ? 0 : books.size();
+            if (actual != lent[i] || actual != shadowLoans.get(i)) {
+                violation(borrowerNames[i] + " has " + actual + " books, the workers lent "
+                    + lent[i] + " and counted " + shadowLoans.get(i));
+            }
+        }
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getTitle(), book.getAuthor(), book.getGenre(), book.getISBN(), book.getPublishedYear());
+    }
+
+    private void violation(String message) {
+        if (violations.size() < MAX_VIOLATIONS) {
+            violations.add(message);
+        }
+    }
+
+    /*
+     * Outcome of one run
+     */
+    static final class Result {
+        final int threads;
+        final long operations;
+        final long succeeded;
+        final long elapsedNanos;
+        final List<String> violations;
+
+        Result(int threads, long operations, long succeeded, long elapsedNanos, List<String> violations) {
+            this.threads = threads;
+            this.operations = operations;
+            this.succeeded = succeeded;
+            this.elapsedNanos = elapsedNanos;
+            this.violations = violations;
+        }
+
+        double throughput() {
+            return operations / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d threads: %d ops in %d ms (%.0f ops/s), %d accepted, %d violations",
+                threads, operations, elapsedNanos / 1_000_000, throughput(), succeeded, violations.size());
+        }
+    }
+}
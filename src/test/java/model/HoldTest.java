@@ -0,0 +1,101 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import exception.BookNotAvailableException;
+import exception.BookNotFoundException;
+import exception.BorrowLimitExceededException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HoldTest {
+
+    private static Exception failureOf(Hold hold) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> hold.whenReady().get(5, TimeUnit.SECONDS));
+        return (Exception) e.getCause();
+    }
+
+    @Test
+    void returnedBookGoesToTheFirstWaitingHold() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        lib.borrowBook("Dune", "Ada");
+
+        Hold grace = lib.placeHold("Dune", "Grace");
+        Hold linus = lib.placeHold("Dune", "Linus");
+        Hold alan = lib.placeHold("Dune", "Alan");
+        assertTrue(grace.isWaiting());
+        assertTrue(grace.cancel());
+        assertEquals(Arrays.asList(linus, alan), lib.holdsFor("Dune"));
+
+        lib.returnBook("Dune", "Ada");
+        Book handedOver = linus.whenReady().get(5, TimeUnit.SECONDS);
+
+        assertEquals(Hold.State.READY, linus.getState());
+        assertFalse(handedOver.isAvailable(), "The book should go straight to the next holder");
+        assertEquals(Arrays.asList(handedOver), lib.getBorrowerReport().get("Linus"));
+        assertTrue(grace.whenReady().isCompletedExceptionally(), "A cancelled hold never completes normally");
+        assertEquals(Arrays.asList(alan), lib.holdsFor("Dune"));
+
+        alan.cancel();
+        lib.returnBook("Dune", "Linus");
+        assertTrue(lib.findBookByTitle("Dune").isAvailable(), "Nobody is waiting any more");
+        assertEquals(Hold.State.READY, lib.placeHold("Dune", "Alan").getState(), "An available book is lent at once");
+    }
+
+    @Test
+    void handOffSkipsAHolderAtTheirLoanLimit() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        lib.addBook(new Book("Emma", "Jane Austen", "Classic", "9780141439587", 1815));
+        lib.borrowers().defineTier("single", 1);
+        lib.borrowers().assignTier("Grace", "single");
+        lib.borrowBook("Dune", "Ada");
+
+        Hold grace = lib.placeHold("Dune", "Grace");
+        Hold linus = lib.placeHold("Dune", "Linus");
+        // Grace uses up her only loan while she waits
+        lib.borrowBook("Emma", "Grace");
+        lib.returnBook("Dune", "Ada");
+
+        assertEquals(Hold.State.FAILED, grace.getState());
+        assertTrue(failureOf(grace) instanceof BorrowLimitExceededException);
+        assertEquals("Dune", linus.whenReady().get(5, TimeUnit.SECONDS).getTitle(), "The next holder gets the book");
+        assertEquals(1, lib.borrowers().find("Grace").getActiveLoans(), "The failed hand-off took no loan");
+    }
+
+    @Test
+    void removingABookFailsItsWaitingHolds() throws Exception {
+        Library lib = new Library();
+        Book dune = new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965);
+        lib.addBook(dune);
+        lib.borrowBook("Dune", "Ada");
+        Hold grace = lib.placeHold("Dune", "Grace");
+        // put back on the shelf by hand, without going through returnBook and its hand-off
+        dune.setIsAvailable(true);
+
+        lib.removeBook("9780441013593");
+
+        assertEquals(Hold.State.FAILED, grace.getState());
+        assertTrue(failureOf(grace) instanceof BookNotFoundException);
+    }
+
+    @Test
+    void aBorrowerCannotHoldABookTheyHaveOrAlreadyWaitFor() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Dune", "Frank Herbert", "Sci-Fi", "9780441013593", 1965));
+        lib.borrowBook("Dune", "Ada");
+
+        assertThrows(BookNotAvailableException.class, () -> lib.placeHold("Dune", "Ada"));
+        Hold grace = lib.placeHold("Dune", "Grace");
+        assertThrows(BookNotAvailableException.class, () -> lib.placeHold("Dune", "Grace"));
+        assertEquals(Arrays.asList(grace), lib.holdsFor("Dune"));
+
+        lib.returnBook("Dune", "Ada");
+        assertEquals(Arrays.asList(lib.findBookByTitle("Dune")), lib.getBorrowerReport().get("Grace"),
+            "The book goes to the waiting holder, not back to Ada");
+        assertNull(lib.getBorrowerReport().get("Ada"));
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import exception.BookAlreadyExistsException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnTest {
+
+    @Test
+    void isbnFormsNormalizeToTheSameBook() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Clean Code", "R. C. Martin", "Software", "978-0132350884", 2008));
+
+        // same book written without hyphens and as ISBN-10
+        assertThrows(BookAlreadyExistsException.class,
+            () -> lib.addBook(new Book("Clean Code", "R. C. Martin", "Software", "9780132350884", 2008)));
+        assertEquals("Clean Code", lib.findBookByISBN("0-13-235088-2").getTitle());
+        assertEquals("9780132350884", lib.findBookByISBN("0132350882").getISBN());
+    }
+
+    @Test
+    void isbn10WithAnXCheckDigitBecomesAn978Isbn13() {
+        assertTrue(Isbn.isValid("0-8044-2957-X"));
+        assertEquals("9780804429573", Isbn.normalize("0-8044-2957-X"));
+        assertEquals(Isbn.toKey("080442957x"), Isbn.toKey("978-0-8044-2957-3"), "Lower case x is accepted too");
+        assertFalse(Isbn.isValid("0-8044-2957-1"), "Bad ISBN-10 check digit");
+        assertFalse(Isbn.isValid("978-0132350885"), "Bad ISBN-13 check digit");
+    }
+
+    @Test
+    void isbn979IsKeptAsIs() {
+        assertTrue(Isbn.isValid("979-10-90636-07-1"));
+        assertEquals("9791090636071", Isbn.normalize("979-10-90636-07-1"));
+        assertFalse(Isbn.isLegacyKey(Isbn.toKey("9791090636071")));
+        // right checksum but neither 978 nor 979: not an ISBN-13
+        assertTrue(Isbn.isLegacyKey(Isbn.toKey("9770000000001")));
+    }
+
+    @Test
+    void legacyIdsRoundTrip() {
+        assertEquals("123", Isbn.fromKey(Isbn.toKey("123")), "Digit ids should round-trip");
+        assertEquals("12X", Isbn.fromKey(Isbn.toKey("12X")));
+        assertEquals("ISBN-001", Isbn.normalize("ISBN-001"), "Text ids should be kept unchanged");
+        assertNotEquals(Isbn.toKey("ISBN-001"), Isbn.toKey("ISBN001"));
+        assertTrue(Isbn.toKey("ISBN-001") > 0, "Keys are never negative");
+        assertEquals(-1, Isbn.tryToKey(null));
+        assertThrows(IllegalArgumentException.class, () -> Isbn.toKey(null));
+    }
+
+    @Test
+    void textIdKeysDependOnlyOnTheText() {
+        // archives store these keys, so they must not change between runs or releases
+        assertEquals(0x5FAE1725F9DB27F5L, Isbn.tryToKey("ISBN-001"), "Lookups see the key before any book has it");
+        assertEquals(Isbn.tryToKey("ISBN-001"), Isbn.toKey("ISBN-001"));
+        assertTrue(Isbn.isTextKey(Isbn.toKey("ISBN-001")));
+        assertFalse(Isbn.isTextKey(Isbn.toKey("123")));
+        assertFalse(Isbn.isTextKey(Isbn.toKey("978-0132350884")));
+        assertThrows(IllegalArgumentException.class, () -> Isbn.fromKey(Isbn.toKey("ISBN-001")));
+    }
+
+    @Test
+    void prefixRangeCoversEveryIsbnWithThePrefix() {
+        long[] range = Isbn.prefixRange("978-0-13");
+        assertEquals(9_780_130_000_000L, range[0]);
+        assertEquals(9_780_140_000_000L, range[1]);
+        assertTrue(Isbn.toKey("978-0132350884") >= range[0] && Isbn.toKey("978-0132350884") < range[1]);
+        assertFalse(Isbn.toKey("978-0201485677") < range[1]);
+
+        long[] exact = Isbn.prefixRange("9780132350884");
+        assertEquals(1, exact[1] - exact[0], "A full ISBN is a range of one key");
+        assertNull(Isbn.prefixRange("97801323508841"), "More than 13 digits");
+        assertNull(Isbn.prefixRange("978-X"));
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.util.HashMap;
+import java.util.List;
+import workload.WorkloadGenerator;
+
+/*
+ * Heap retained by a Library per book: catalog, ISBN table and secondary indexes.
+ * Not a unit test; run it by hand against the test classpath:
+ *
+ *   mvn -q test-compile
+ *   java -Xmx4g -cp target/classes:target/test-classes:<jackson jars> model.LibraryFootprint 1000000
+ *
+ * The books come from WorkloadGenerator (unique titles, Zipf-distributed authors and genres)
+ * and are measured on their own first, so the reported numbers are what the Library adds on
+ * top of the Book objects it holds.
+ */
+public final class LibraryFootprint {
+
+    private static volatile Object sink;
+
+    private LibraryFootprint() {
+        throw new UnsupportedOperationException("Benchmark entry point");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long empty = usedHeap();
+        List<Book> books = new WorkloadGenerator(42).catalog(n);
+        long withBooks = usedHeap();
+        System.out.printf("%d books: %.1f B/book in Book objects%n", n, (double) (withBooks - empty) / n);
+
+        Library library = new Library();
+        library.addBooks(books);
+        sink = library;
+        report("addBooks", n, usedHeap() - withBooks);
+
+        sink = null;
+        library = new Library();
+        library.loadSnapshot(books.toArray(new Book[0]), new HashMap<>());
+        sink = library;
+        report("loadSnapshot", n, usedHeap() - withBooks);
+    }
+
+    private static void report(String name, int n, long heap) {
+        System.out.printf("  %-13s %6.1f B/book, %d MB in total%n", name, (double) heap / n, heap >> 20);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,11 +1,24 @@
 package model;
 
 import util.FileUtils;
+import workload.WorkloadGenerator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import exception.BookAlreadyExistsException;
+import exception.BookNotFoundException;
+import exception.EventOverrunException;
+import exception.BorrowLimitExceededException;
 import org.junit.jupiter.api.Test;
 import java.nio.file.Path;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -99,5 +112,379 @@ class LibraryServiceTest {
         assertEquals(1, loadedLib.getBooks().size(), "Loaded library should have one book");
     }
 
-    
+    @Test
+    void pagingWalksTheCatalogOnceWithAFilter() throws Exception {
+        Library lib = new Library();
+        for(int i = 0; i < 25; i++){
+            lib.addBook(new Book("Title " + i, "Author", i % 2 == 0 ? "Art" : "Fiction", String.valueOf(100 + i), 1990 + i));
+        }
+        lib.borrowBook("Title 0", "Rahkel");
+
+        BookFilter filter = BookFilter.all().available().genre("Art");
+        List<Book> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            BookPage page = lib.pageBooks(filter, cursor, 5);
+            seen.addAll(page.getBooks());
+            cursor = page.getNextCursor();
+        } while(cursor != null);
+
+        // 13 Art books, one of them borrowed
+        assertEquals(12, seen.size(), "Every matching book should be returned once");
+        assertEquals(12, lib.streamBooks(filter).count(), "Stream and pages should agree");
+    }
+
+    @Test
+    void rangeAndPrefixScansUseTheSortedIndexes() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Clean Code", "R. C. Martin", "Software", "978-0132350884", 2008));
+        lib.addBook(new Book("Refactoring", "M. Fowler", "Software", "978-0201485677", 1999));
+        lib.addBook(new Book("Effective Java", "J. Bloch", "Software", "978-0134685991", 2017));
+        lib.addBook(new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932));
+
+        List<Book> nineties = new ArrayList<>();
+        lib.streamBooksPublishedBetween(1990, 2010).forEach(nineties::add);
+        assertEquals(2, nineties.size());
+        assertEquals("Refactoring", nineties.get(0).getTitle(), "Range scan should be ordered by year");
+
+        assertEquals(2, lib.streamBooksByIsbnPrefix("978-0-13").count(), "Prefix scan should ignore separators");
+        lib.removeBook("978-0132350884");
+        assertEquals(1, lib.streamBooksByIsbnPrefix("978013").count(), "Removed books should leave the index");
+    }
+
+    @Test
+    void queryPlannerDrivesFromTheMostSelectiveIndex() throws Exception {
+        Library lib = new Library();
+        for(int i = 0; i < 40; i++){
+            String author = i < 2 ? "J. Bloch" : "Author " + (i % 5);
+            lib.addBook(new Book("Title " + i, author, i % 4 == 0 ? "Software" : "Fiction", String.valueOf(1000 + i), 1980 + i));
+        }
+        lib.borrowBook("Title 0", "Rahkel");
+
+        BookQuery query = BookQuery.all().author("J. Bloch").genre("Software").available();
+        QueryPlan plan = lib.explain(query);
+        assertTrue(plan.explain().contains("index author='J. Bloch'"), plan.explain());
+
+        // Title 0 is the only Software book by J. Bloch, and it is borrowed
+        assertTrue(lib.query(query).isEmpty());
+        assertEquals(1, lib.query(BookQuery.all().author("J. Bloch").genre("Software")).size());
+
+        // no indexed criterion left: falls back to a scan
+        assertTrue(lib.explain(BookQuery.all().available()).explain().contains("scan"));
+        assertEquals(39, lib.query(BookQuery.all().available()).size());
+    }
+
+    @Test
+    void isbnQueriesForUnknownIdsMatchNothing() throws Exception {
+        Library lib = new Library();
+        lib.addBook(new Book("Effective Java", "J. Bloch", "Software", "978-0134685991", 2018));
+
+        assertEquals(1, lib.query(BookQuery.all().isbn("0134685997")).size(), "ISBN-10 finds the ISBN-13 book");
+        BookQuery unknown = BookQuery.all().isbn("no such id");
+        assertTrue(lib.query(unknown).isEmpty(), "An unknown ISBN is a filter, not a missing one");
+        assertEquals(0, lib.explain(unknown).getEstimatedRows());
+        assertTrue(unknown.toString().contains("isbn=no such id"), unknown.toString());
+        assertThrows(NullPointerException.class, () -> BookQuery.all().isbn(null));
+    }
+
+    @Test
+    void searchCacheIsInvalidatedOnlyWhenAnAnswerChanges() throws Exception {
+        for(SearchCache.Policy policy : SearchCache.Policy.values()){
+            Library lib = new Library();
+            lib.setSearchCache(new SearchCache(policy, 100));
+            lib.addBook(new Book("Clean Code", "R. C. Martin", "Software", "978-0132350884", 2008));
+            lib.addBook(new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932));
+
+            assertEquals("Clean Code", lib.findBookByGenre("Software").getTitle());
+            assertEquals("Clean Code", lib.findBookByGenre("Software").getTitle());
+            assertThrows(BookNotFoundException.class, () -> lib.findBookByAuthor("M. Fowler"));
+            assertEquals(1, lib.getSearchCacheStats().getHits(), policy + ": second search should hit");
+
+            // borrowing never changes a search answer
+            lib.borrowBook("Brave New World", "Rahkel");
+            assertEquals(0, lib.getSearchCacheStats().getInvalidations());
+
+            // the cached miss for M. Fowler must go, the Software answer stays because Clean Code sorts first
+            lib.addBook(new Book("Refactoring", "M. Fowler", "Software", "978-0201485677", 1999));
+            assertEquals("Refactoring", lib.findBookByAuthor("M. Fowler").getTitle());
+            assertEquals(1, lib.getSearchCacheStats().getInvalidations(), policy.toString());
+
+            lib.removeBook("978-0132350884");
+            assertEquals("Refactoring", lib.findBookByGenre("Software").getTitle());
+        }
+    }
+
+    @Test
+    void wTinyLfuKeepsPopularSearchesThroughAScan() throws Exception {
+        Library lib = new Library();
+        lib.addBooks(new WorkloadGenerator(3).catalog(2000));
+        for(SearchCache.Policy policy : SearchCache.Policy.values()){
+            SearchCache cache = new SearchCache(policy, 100);
+            lib.setSearchCache(cache);
+            for(int round = 0; round < 5; round++){
+                for(int i = 0; i < 20; i++){
+                    lib.findBookByTitle("Title " + i);
+                }
+            }
+            // ten times the capacity in one-off searches
+            for(int i = 100; i < 1100; i++){
+                lib.findBookByTitle("Title " + i);
+            }
+            long hitsBefore = cache.stats().getHits();
+            for(int i = 0; i < 20; i++){
+                assertEquals("Title " + i, lib.findBookByTitle("Title " + i).getTitle());
+            }
+            long popularHits = cache.stats().getHits() - hitsBefore;
+
+            assertTrue(cache.stats().getSize() <= 100, policy + ": " + cache.stats());
+            assertTrue(cache.stats().getEvictions() >= 900, policy + ": " + cache.stats());
+            if(policy == SearchCache.Policy.W_TINY_LFU){
+                // the sketch ages during the scan, so one that was only just promoted may still go
+                assertTrue(popularHits >= 18, "Admission keeps the popular titles: " + cache.stats());
+            }else{
+                assertEquals(0, popularHits, "LRU lets the scan push them out");
+            }
+        }
+    }
+
+    @Test
+    void largeSearchCachesAreSegmented() throws Exception {
+        assertEquals(1, new SearchCache(SearchCache.Policy.LRU, 100).getSegmentCount());
+        assertEquals(SearchCache.MAX_SEGMENTS, new SearchCache(SearchCache.Policy.LRU, 1 << 20).getSegmentCount());
+
+        Library lib = new Library();
+        lib.addBooks(new WorkloadGenerator(4).catalog(20_000));
+        SearchCache cache = new SearchCache(SearchCache.Policy.W_TINY_LFU, 4096);
+        lib.setSearchCache(cache);
+        for(int i = 0; i < 20_000; i++){
+            lib.findBookByTitle("Title " + i);
+        }
+        assertEquals(4096 / SearchCache.MIN_SEGMENT_ENTRIES, cache.getSegmentCount());
+        assertTrue(cache.stats().getSize() <= 4096, cache.stats().toString());
+        assertEquals(20_000 - cache.stats().getSize(), cache.stats().getEvictions(), cache.stats().toString());
+        // an answer cached in one segment is invalidated there
+        lib.findBookByTitle("Title 7");
+        lib.removeBook(lib.findBookByTitle("Title 7").getISBN());
+        assertThrows(BookNotFoundException.class, () -> lib.findBookByTitle("Title 7"));
+    }
+
+    @Test
+    void subscribersReceiveChangeEventsInOrderedBatches() throws Exception {
+        Library lib = new Library();
+        List<LibraryEvent> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        lib.events().subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+            public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+            public void onNext(List<LibraryEvent> batch) {
+                received.addAll(batch);
+                batch.forEach(e -> done.countDown());
+            }
+            public void onError(Throwable error) { }
+            public void onComplete() { }
+        }, 2);
+        lib.addBook(new Book("Clean Code", "R. C. Martin", "Software", "978-0132350884", 2008));
+        lib.addBook(new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932));
+        lib.borrowBook("Clean Code", "Rahkel");
+        lib.returnBook("Clean Code", "Rahkel");
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "All events should arrive");
+        assertEquals(LibraryEvent.Type.BOOK_ADDED, received.get(0).getType());
+        assertEquals(LibraryEvent.Type.BOOK_RETURNED, received.get(3).getType());
+        assertEquals("Rahkel", received.get(3).getBorrowerName());
+        for(int i = 1; i < received.size(); i++){
+            assertEquals(received.get(i - 1).getSequence() + 1, received.get(i).getSequence());
+        }
+    }
+
+    @Test
+    void failingSubscriberIsToldWhenTheRingOverruns() throws Exception {
+        LibraryEventPublisher publisher = new LibraryEventPublisher(4, Runnable::run);
+        List<Throwable> errors = new ArrayList<>();
+        Flow.Subscription[] handle = new Flow.Subscription[1];
+        publisher.subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+            public void onSubscribe(Flow.Subscription subscription) { handle[0] = subscription; }
+            public void onNext(List<LibraryEvent> batch) { }
+            public void onError(Throwable error) { errors.add(error); }
+            public void onComplete() { }
+        }, LibraryEventPublisher.DEFAULT_BATCH_SIZE, Runnable::run, LibraryEventPublisher.Overflow.FAIL);
+        Book book = new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932);
+        for(int i = 0; i < 6; i++){
+            publisher.publish(LibraryEvent.Type.BOOK_ADDED, book, null);
+        }
+        // nothing was requested yet, so by now the first events are gone
+        handle[0].request(1);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof EventOverrunException);
+    }
+
+    @Test
+    void blockingSubscriberHoldsPublishersBackUntilItAsksForMore() throws Exception {
+        ExecutorService delivery = Executors.newSingleThreadExecutor();
+        try {
+            LibraryEventPublisher publisher = new LibraryEventPublisher(4, delivery);
+            List<LibraryEvent> received = new CopyOnWriteArrayList<>();
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            CountDownLatch subscribed = new CountDownLatch(1);
+            Flow.Subscription[] handle = new Flow.Subscription[1];
+            publisher.subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+                public void onSubscribe(Flow.Subscription subscription) {
+                    handle[0] = subscription;
+                    subscribed.countDown();
+                }
+                public void onNext(List<LibraryEvent> batch) { received.addAll(batch); }
+                public void onError(Throwable error) { errors.add(error); }
+                public void onComplete() { }
+            }, 3, delivery, LibraryEventPublisher.Overflow.BLOCK);
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+            Book book = new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932);
+            AtomicInteger published = new AtomicInteger();
+            Thread producer = new Thread(() -> {
+                for(int i = 0; i < 10; i++){
+                    publisher.publish(LibraryEvent.Type.BOOK_ADDED, book, null);
+                    published.incrementAndGet();
+                }
+            });
+            producer.start();
+            producer.join(200);
+            assertEquals(4, published.get(), "Nothing was requested, so the producer waits once the ring is full");
+
+            handle[0].request(Long.MAX_VALUE);
+            producer.join(5000);
+            assertFalse(producer.isAlive());
+            delivery.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            assertEquals(10, received.size(), "Every event arrives");
+            for(int i = 0; i < received.size(); i++){
+                assertEquals(i, received.get(i).getSequence());
+            }
+            assertTrue(errors.isEmpty());
+        } finally {
+            delivery.shutdownNow();
+        }
+    }
+
+    @Test
+    void aThrowingSubscriberIsCancelledAndToldWhy() throws Exception {
+        LibraryEventPublisher publisher = new LibraryEventPublisher(4, Runnable::run);
+        List<Throwable> errors = new ArrayList<>();
+        List<LibraryEvent> healthy = new ArrayList<>();
+        publisher.subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+            public void onSubscribe(Flow.Subscription subscription) { throw new IllegalStateException("onSubscribe"); }
+            public void onNext(List<LibraryEvent> batch) { }
+            public void onError(Throwable error) { errors.add(error); }
+            public void onComplete() { }
+        });
+        publisher.subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+            public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+            public void onNext(List<LibraryEvent> batch) { throw new IllegalStateException("onNext"); }
+            public void onError(Throwable error) { errors.add(error); }
+            public void onComplete() { }
+        });
+        publisher.subscribe(new Flow.Subscriber<List<LibraryEvent>>() {
+            public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+            public void onNext(List<LibraryEvent> batch) { healthy.addAll(batch); }
+            public void onError(Throwable error) { errors.add(error); }
+            public void onComplete() { }
+        });
+        assertEquals(2, publisher.getSubscriberCount(), "The subscriber whose onSubscribe threw is gone");
+
+        Book book = new Book("Brave New World", "A. Huxley", "Fiction", "123", 1932);
+        publisher.publish(LibraryEvent.Type.BOOK_ADDED, book, null);
+        publisher.publish(LibraryEvent.Type.BOOK_REMOVED, book, null);
+
+        assertEquals(Arrays.asList("onSubscribe", "onNext"),
+            errors.stream().map(Throwable::getMessage).collect(Collectors.toList()));
+        assertEquals(1, publisher.getSubscriberCount());
+        assertEquals(2, healthy.size(), "Other subscribers keep receiving events");
+    }
+
+    @Test
+    void borrowerTiersLimitLoansAndSurviveReload(@TempDir Path tmp) throws Exception {
+        Library lib = new Library();
+        for(int i = 0; i < 20; i++){
+            lib.addBook(new Book("Title " + i, "Author", "Genre", String.valueOf(1000 + i), 2000));
+        }
+        lib.borrowers().defineTier("student", 2);
+        lib.borrowers().assignTier("Ada", "student");
+
+        lib.borrowBook("Title 0", "Ada");
+        lib.borrowBook("Title 1", "Ada");
+        assertThrows(BorrowLimitExceededException.class, () -> lib.borrowBook("Title 2", "Ada"));
+        lib.returnBook("Title 0", "Ada");
+        lib.borrowBook("Title 2", "Ada");
+
+        // the standard tier keeps the old limit of six
+        for(int i = 3; i < 9; i++){
+            lib.borrowBook("Title " + i, "Grace");
+        }
+        assertThrows(BorrowLimitExceededException.class, () -> lib.borrowBook("Title 9", "Grace"));
+
+        Borrower ada = lib.borrowers().find("Ada");
+        assertSame(ada, lib.borrowers().get(ada.getId()));
+        assertEquals(2, ada.getActiveLoans());
+
+        Path libraryFile = tmp.resolve("lib.json");
+        Path borrowersFile = tmp.resolve("borrowers.json");
+        FileUtils.saveLibraryToFile(lib, libraryFile.toString());
+        FileUtils.saveBorrowersToFile(lib.borrowers(), borrowersFile.toString());
+
+        Library loaded = FileUtils.loadLibraryFromFile(libraryFile.toString());
+        loaded.setBorrowerRegistry(FileUtils.loadBorrowersFromFile(borrowersFile.toString()));
+        Borrower reloaded = loaded.borrowers().find("Ada");
+        assertEquals(ada.getId(), reloaded.getId());
+        assertEquals("student", reloaded.getTier().getName());
+        assertEquals(2, reloaded.getActiveLoans(), "Loan counts should come from the borrower map");
+        assertEquals(6, loaded.borrowers().find("Grace").getActiveLoans());
+        assertThrows(BorrowLimitExceededException.class, () -> loaded.borrowBook("Title 10", "Ada"));
+    }
+
+    @Test
+    void booksWithMissingFieldsCanBeAddedAndRemoved() throws Exception {
+        Library lib = new Library();
+        lib.setSearchCache(new SearchCache(SearchCache.Policy.LRU, 10));
+        lib.addBook(new Book("Untitled", null, null, "978-0132350884", 2008));
+        lib.addBook(new Book(null, "A. Huxley", "Fiction", "123", 1932));
+
+        assertEquals(2, lib.getTotalBookCount());
+        assertEquals("", lib.findBookByISBN("978-0132350884").getAuthor(), "A missing field is empty");
+        assertEquals("123", lib.findBookByTitle("").getISBN());
+        assertTrue(lib.findBookByISBN("123").isAvailable());
+        assertEquals(1, lib.query(BookQuery.all().genre("")).size());
+
+        lib.removeBook("978-0132350884");
+        assertEquals(1, lib.getTotalBookCount());
+        lib.addBook(new Book("Untitled", null, null, "978-0132350884", 2008));
+        assertEquals(2, lib.getTotalBookCount(), "A removed book can be added again");
+    }
+
+    @Test
+    void isbnPrefixEstimatesStayCheapOnLargeRanges() throws Exception {
+        Library lib = new Library();
+        // ISBNs 978000000000c + 10 * i, evenly spread from the start of the 978 range
+        lib.addBooks(new WorkloadGenerator(1).catalog(20_000));
+
+        assertEquals(20_000, lib.explain(BookQuery.all().isbnPrefix("978")).getEstimatedRows(),
+            "Extrapolated, but never above the catalog size");
+        long thousand = lib.explain(BookQuery.all().isbnPrefix("978-000001")).getEstimatedRows();
+        assertTrue(thousand > 500 && thousand < 2000, "1000 books share the prefix, estimated " + thousand);
+        assertEquals(10, lib.explain(BookQuery.all().isbnPrefix("97800000001")).getEstimatedRows(), "Small ranges are counted");
+        assertEquals(1000, lib.query(BookQuery.all().isbnPrefix("978-000001")).size());
+
+        String author = lib.findBookByTitle("Title 3").getAuthor();
+        assertTrue(lib.explain(BookQuery.all().isbnPrefix("978").author(author)).explain().contains("index author="),
+            "A selective index still drives");
+    }
+
+    @Test
+    void concurrentCirculationKeepsTheLibraryConsistent() throws Exception {
+        // few books and borrowers with a low limit, so borrows collide and the limit is hit all the time
+        CirculationStress stress = new CirculationStress(64, 12, 11);
+        CirculationStress.Result result = stress.run(8, 20_000, 11);
+
+        assertEquals(Arrays.asList(), result.violations, result.toString());
+        assertTrue(result.succeeded > 0 && result.succeeded < result.operations, result.toString());
+        Library lib = stress.getLibrary();
+        assertTrue(lib.getNumberOfBorrowedBooks() <= 12 * CirculationStress.LOAN_LIMIT);
+    }
+
 }
@@ -0,0 +1,61 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringBookIndexTest {
+
+    private static Book book(String author, String isbn) {
+        return new Book("Title " + isbn, author, "Genre", isbn, 2000);
+    }
+
+    @Test
+    void bucketsGrowFromASingleBookAndShrinkBack() {
+        StringBookIndex index = new StringBookIndex();
+        Book late = book("Austen", "9780141439587");
+        Book early = book("Austen", "9780141439518");
+        Book other = book("Herbert", "9780441013593");
+
+        index.add("Austen", late);
+        index.add("Herbert", other);
+        assertEquals(1, index.count("Austen"));
+        assertSame(late, index.first("Austen"));
+        assertEquals(Arrays.asList(late), new ArrayList<>(index.bucket("Austen").values()));
+
+        index.add("Austen", early);
+        index.add("Austen", early);
+        assertEquals(2, index.count("Austen"), "Adding the same book twice counts it once");
+        assertSame(early, index.first("Austen"), "The lowest ISBN comes first");
+        assertEquals(Arrays.asList(early, late), new ArrayList<>(index.bucket("Austen").values()));
+
+        index.remove("Austen", early);
+        assertEquals(1, index.count("Austen"));
+        assertSame(late, index.first("Austen"));
+        index.remove("Austen", late);
+        index.remove("Nobody", late);
+        assertEquals(0, index.count("Austen"));
+        assertNull(index.first("Austen"));
+        assertTrue(index.bucket("Austen").isEmpty());
+        assertSame(other, index.first("Herbert"), "Other values are untouched");
+
+        index.clear();
+        assertNull(index.first("Herbert"));
+        index.add("Herbert", other);
+        assertSame(other, index.first("Herbert"));
+    }
+
+    @Test
+    void manyValuesSurviveGrowth() {
+        StringBookIndex index = new StringBookIndex();
+        for (int i = 0; i < 10_000; i++) {
+            index.add("Author " + (i % 1000), book("Author " + (i % 1000), String.valueOf(100_000 + i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(10, index.count("Author " + i));
+            assertEquals(String.valueOf(100_000 + i), index.first("Author " + i).getISBN());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package report;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import model.Book;
+import model.Library;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import workload.WorkloadGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportEngineTest {
+
+    private final Library lib = new Library();
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private ReportEngine reports;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lib.addBooks(new WorkloadGenerator(5).catalog(5000));
+        reports = new ReportEngine(lib, pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    // What the engine computes in parallel, done with one sequential stream
+    private Map<String, Long> sequentialCount(Function<Book, String> classifier) {
+        return lib.getAllBooks().stream().collect(Collectors.groupingBy(classifier, Collectors.counting()));
+    }
+
+    @Test
+    void countsMatchASequentialCount() {
+        assertEquals(sequentialCount(Book::getGenre), reports.countByGenre());
+        assertEquals(sequentialCount(Book::getAuthor), reports.countByAuthor());
+        assertEquals(5000L, reports.countByDecade().values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(reports.countByDecade().keySet().stream().allMatch(decade -> decade % 10 == 0));
+    }
+
+    @Test
+    void topKReturnsTheHighestCountsInOrder() {
+        Map<String, Long> expected = sequentialCount(Book::getAuthor);
+        List<Map.Entry<String, Long>> top = reports.topK(Book::getAuthor, 3);
+
+        assertEquals(3, top.size());
+        long highest = expected.values().stream().mapToLong(Long::longValue).max().getAsLong();
+        assertEquals(highest, top.get(0).getValue());
+        assertTrue(top.get(0).getValue() >= top.get(1).getValue() && top.get(1).getValue() >= top.get(2).getValue());
+        for (Map.Entry<String, Long> entry : top) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Test
+    void topBooksKeepsTheFirstUnderTheOrder() {
+        Comparator<Book> byYear = Comparator.comparingInt(Book::getPublishedYear);
+        List<Book> oldest = reports.topBooks(b -> true, byYear, 3);
+
+        List<Integer> expected = lib.getAllBooks().stream().sorted(byYear).limit(3)
+            .map(Book::getPublishedYear).collect(Collectors.toList());
+        assertEquals(expected, oldest.stream().map(Book::getPublishedYear).collect(Collectors.toList()));
+    }
+}
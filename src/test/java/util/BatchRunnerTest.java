@@ -0,0 +1,68 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import model.Library;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRunnerTest {
+
+    @Test
+    void executesCsvAndJsonCommandsInOrder() throws Exception {
+        Library lib = new Library();
+        String script = String.join("\n",
+            "# circulation for one day",
+            "add,9780441013593,Dune,Frank Herbert,Sci-Fi,1965",
+            "{\"op\":\"add\",\"isbn\":\"9780451524935\",\"title\":\"1984, Revised\",\"author\":\"George Orwell\",\"genre\":\"Fiction\",\"year\":1949}",
+            "borrow,Dune,Ada",
+            "borrow,Dune,Grace",
+            "hold,Dune,Grace",
+            "{\"op\":\"return\",\"title\":\"Dune\",\"borrower\":\"Ada\"}",
+            "",
+            "find-author,George Orwell",
+            "borrow,Dune",
+            "count");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BatchRunner.Summary summary = new BatchRunner(lib).run(
+            Channels.newChannel(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8))),
+            Channels.newChannel(out));
+
+        String[] results = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(9, results.length);
+        assertEquals(7, summary.getSucceeded());
+        assertEquals(2, summary.getFailed());
+        assertEquals("2\tOK\tadded 9780441013593", results[0]);
+        assertTrue(results[3].startsWith("5\tERROR\t"), "Dune is already out");
+        assertEquals("6\tOK\twaiting, position 1", results[4]);
+        assertEquals("9\tOK\t9780451524935,1984, Revised,George Orwell,Fiction,1949,true", results[6]);
+        assertTrue(results[7].startsWith("10\tERROR\tInvalid command"));
+        assertEquals("11\tOK\t2 books, 1 borrowed", results[8]);
+        assertEquals(1, lib.getBorrowerReport().get("Grace").size(), "The hold was filled on return");
+    }
+
+    @Test
+    void everyCommandStaysOnOneOutputLine() throws Exception {
+        Library lib = new Library();
+        String script = String.join("\n",
+            "{\"op\":\"add\",\"isbn\":\"9780441013593\",\"title\":\"Dune\\tPart\\nOne\",\"author\":\"Frank Herbert\",\"genre\":\"Sci-Fi\",\"year\":1965}",
+            "{\"op\":\"find-isbn\",\"isbn\":",
+            "find-isbn,9780441013593");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new BatchRunner(lib).run(
+            Channels.newChannel(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8))),
+            Channels.newChannel(out));
+
+        String[] results = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, results.length);
+        assertTrue(results[1].startsWith("2\tERROR\tInvalid command: "), results[1]);
+        assertEquals(3, results[1].split("\t").length, "Jackson's multi-line message is escaped");
+        assertTrue(results[1].contains("\\n at [Source"), results[1]);
+        assertEquals("3\tOK\t9780441013593,Dune\\tPart\\nOne,Frank Herbert,Sci-Fi,1965,true", results[2]);
+    }
+}
@@ -0,0 +1,58 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+    @Test
+    void matchesHashMapAcrossResizes() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // small key space so puts, overwrites and removes all hit while tables are migrating
+            long key = random.nextInt(50_000);
+            if (random.nextInt(4) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? -1 : removed, map.remove(key));
+            } else {
+                Integer previous = expected.put(key, i);
+                assertEquals(previous == null ? -1 : previous, map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 50_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+
+    @Test
+    void zeroIsAnOrdinaryKey() {
+        LongIntHashMap map = new LongIntHashMap(4, LongIntHashMap.DEFAULT_LOAD_FACTOR, -1);
+        assertFalse(map.containsKey(0));
+        assertEquals(-1, map.get(0));
+
+        assertEquals(-1, map.put(0, 7));
+        assertEquals(-1, map.put(1, 8));
+        assertTrue(map.containsKey(0));
+        assertEquals(2, map.size());
+        assertEquals(7, map.put(0, 9), "Overwriting returns the previous value");
+        assertEquals(9, map.get(0));
+
+        assertEquals(9, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(-1, map.remove(0));
+        assertEquals(8, map.get(1), "Other keys are untouched");
+        assertEquals(1, map.size());
+
+        map.put(0, 1);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(0));
+    }
+}
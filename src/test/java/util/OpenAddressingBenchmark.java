@@ -0,0 +1,150 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+ * Compares LongIntHashMap and StringIdMap with the java.util.HashMap they replace.
+ * Not a unit test; run it by hand against the test classpath:
+ *
+ *   mvn -q test-compile
+ *   java -Xmx4g -cp target/classes:target/test-classes util.OpenAddressingBenchmark 10000000
+ *
+ * For each map it reports retained heap after the load, the build time, the slowest single put
+ * (the resize spike), and the average time of hits and misses. Numbers come from a warm-up round
+ * followed by a measured one, so treat them as a rough comparison rather than a JMH result.
+ */
+public final class OpenAddressingBenchmark {
+
+    private static final int ROUNDS = 2;
+    // consumes lookup results so the JIT cannot drop the loops
+    private static volatile long sink;
+
+    private OpenAddressingBenchmark() {
+        throw new UnsupportedOperationException("Benchmark entry point");
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long[] keys = isbnKeys(n, 1);
+        long[] missing = isbnKeys(n, 2);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + (round < ROUNDS ? " (warm-up)" : "") + ", " + n + " keys");
+            benchLongInt(keys, missing);
+            benchBoxed(keys, missing);
+            benchStrings(n);
+        }
+    }
+
+    private static void benchLongInt(long[] keys, long[] missing) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        long worstPut = 0;
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < keys.length; i++) {
+            long t = System.nanoTime();
+            map.put(keys[i], i);
+            worstPut = Math.max(worstPut, System.nanoTime() - t);
+        }
+        long build = System.nanoTime() - start;
+        long heap = usedHeap() - before;
+
+        long sum = 0;
+        start = System.nanoTime();
+        for (long key : keys) {
+            sum += map.get(key);
+        }
+        long hits = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (long key : missing) {
+            sum += map.get(key);
+        }
+        long misses = System.nanoTime() - start;
+        report("LongIntHashMap", keys.length, heap, build, worstPut, hits, misses, sum);
+    }
+
+    private static void benchBoxed(long[] keys, long[] missing) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        long worstPut = 0;
+        Map<Long, Integer> map = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            long t = System.nanoTime();
+            map.put(keys[i], i);
+            worstPut = Math.max(worstPut, System.nanoTime() - t);
+        }
+        long build = System.nanoTime() - start;
+        long heap = usedHeap() - before;
+
+        long sum = 0;
+        start = System.nanoTime();
+        for (long key : keys) {
+            sum += map.getOrDefault(key, -1);
+        }
+        long hits = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (long key : missing) {
+            sum += map.getOrDefault(key, -1);
+        }
+        long misses = System.nanoTime() - start;
+        report("HashMap<Long,Integer>", keys.length, heap, build, worstPut, hits, misses, sum);
+    }
+
+    private static void benchStrings(int n) {
+        // authors repeat, as in a real catalog: n books share n / 8 names
+        int distinct = Math.max(1, n / 8);
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = "Author " + (i % distinct);
+        }
+
+        long start = System.nanoTime();
+        StringIdMap ids = new StringIdMap();
+        for (String name : names) {
+            ids.intern(name);
+        }
+        long interned = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Map<String, Integer> boxed = new HashMap<>();
+        for (String name : names) {
+            boxed.computeIfAbsent(name, key -> boxed.size());
+        }
+        long hashed = System.nanoTime() - start;
+        System.out.printf("  %-22s %d names -> %d ids: %d ms (HashMap<String,Integer> %d ms)%n",
+            "StringIdMap", n, ids.size(), interned / 1_000_000, hashed / 1_000_000);
+    }
+
+    private static void report(String name, int n, long heap, long build, long worstPut, long hits, long misses, long sum) {
+        sink += sum;
+        System.out.printf("  %-22s heap %5.1f B/entry, build %5d ms, worst put %6.2f ms, hit %5.1f ns, miss %5.1f ns%n",
+            name, (double) heap / n, build / 1_000_000, worstPut / 1e6, (double) hits / n, (double) misses / n);
+    }
+
+    // 13-digit ISBN-like keys in random order; seed 1 and 2 give disjoint sets
+    private static long[] isbnKeys(int n, int seed) {
+        long[] keys = new long[n];
+        Random random = new Random(seed);
+        long base = seed == 1 ? 9_780_000_000_000L : 9_790_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            keys[i] = base + i * 10L + random.nextInt(10);
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
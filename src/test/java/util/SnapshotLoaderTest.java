@@ -0,0 +1,98 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import model.Book;
+import model.BookQuery;
+import model.Library;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import workload.WorkloadGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotLoaderTest {
+
+    private static final String DUNE = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"genre\":\"Sci-Fi\",\"isbn\":\"ISBN-001\",\"publishedYear\":1965,\"available\":true}";
+    private static final String EMMA = "{\"title\":\"Emma\",\"author\":\"Jane Austen\",\"genre\":\"Classic\",\"isbn\":\"ISBN-002\",\"publishedYear\":1815,\"available\":false}";
+
+    private static Path write(Path file, String json) throws Exception {
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    void readsWhatFileUtilsWrites(@TempDir Path tmp) throws Exception {
+        Library lib = new Library();
+        lib.addBooks(new WorkloadGenerator(9).catalog(5000));
+        lib.borrowBook("Title 42", "Rahkel");
+        String author = lib.findBookByTitle("Title 7").getAuthor();
+        long byAuthor = lib.getAllBooks().stream().filter(b -> b.getAuthor().equals(author)).count();
+        Path file = tmp.resolve("lib.json");
+        FileUtils.saveLibraryToFile(lib, file.toString());
+
+        SnapshotLoader.Result result = new SnapshotLoader().load(file.toString());
+        Library loaded = result.getLibrary();
+
+        assertEquals(5000, loaded.getTotalBookCount());
+        assertEquals(lib.getBooks(), loaded.getBooks());
+        assertFalse(loaded.findBookByTitle("Title 42").isAvailable(), "Availability should be kept");
+        assertEquals(1, loaded.getNumberOfBorrowedBooks());
+        assertEquals(byAuthor, loaded.query(BookQuery.all().author(author)).size(), "Indexes should be built");
+        assertEquals(Arrays.asList("scan", "decode", "index"), new ArrayList<>(result.getPhaseMillis().keySet()));
+
+        // the borrower can return the book after a reload
+        loaded.returnBook("Title 42", "Rahkel");
+        assertTrue(loaded.findBookByTitle("Title 42").isAvailable());
+    }
+
+    @Test
+    void firstRecordWinsOnDuplicateIsbns(@TempDir Path tmp) throws Exception {
+        String copy = DUNE.replace("Dune", "Dune Messiah");
+        Path file = write(tmp.resolve("lib.json"), "{\"books\":[" + DUNE + "," + EMMA + "," + copy + "]}");
+
+        SnapshotLoader.Result result = new SnapshotLoader().load(file.toString());
+
+        assertEquals(3, result.getBookCount(), "Counts records before merging");
+        assertEquals(2, result.getLibrary().getTotalBookCount());
+        assertEquals("Dune", result.getLibrary().findBookByISBN("ISBN-001").getTitle());
+    }
+
+    @Test
+    void legacyTextIdsLoadThroughBothLoaders(@TempDir Path tmp) throws Exception {
+        // library.json as written before ISBNs were normalized: ids of any form
+        Path file = write(tmp.resolve("library.json"),
+            "{\"books\":[" + DUNE + "," + EMMA + "],\"borrowerMap\":{\"Ada\":[" + EMMA + "]}}");
+
+        Library viaFileUtils = FileUtils.loadLibraryFromFile(file.toString());
+        Library viaLoader = new SnapshotLoader().load(file.toString()).getLibrary();
+
+        for (Library lib : new Library[] { viaFileUtils, viaLoader }) {
+            assertEquals(2, lib.getTotalBookCount());
+            assertEquals("Dune", lib.findBookByISBN("ISBN-001").getTitle());
+            assertEquals("ISBN-002", lib.findBookByTitle("Emma").getISBN(), "Ids should be kept as written");
+            assertEquals(1, lib.getBorrowerReport().get("Ada").size());
+            lib.returnBook("Emma", "Ada");
+        }
+
+        // and they survive a save and reload unchanged
+        FileUtils.saveLibraryToFile(viaLoader, file.toString());
+        assertEquals("ISBN-002", new SnapshotLoader().load(file.toString()).getLibrary().findBookByTitle("Emma").getISBN());
+    }
+
+    @Test
+    void recordsWithMissingFieldsStillLoad(@TempDir Path tmp) throws Exception {
+        Path file = write(tmp.resolve("lib.json"),
+            "{\"books\":[{\"title\":\"Dune\",\"isbn\":\"ISBN-001\",\"publishedYear\":1965,\"available\":true}," + EMMA + "]}");
+
+        for (Library lib : new Library[] { FileUtils.loadLibraryFromFile(file.toString()),
+                new SnapshotLoader().load(file.toString()).getLibrary() }) {
+            assertEquals(2, lib.getTotalBookCount());
+            assertEquals("", lib.findBookByTitle("Dune").getAuthor());
+            lib.borrowBook("Dune", "Ada");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringIdMapTest {
+
+    @Test
+    void internHandsOutDenseStableIds() {
+        StringIdMap ids = new StringIdMap();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, ids.intern("Author " + i));
+        }
+        assertEquals(1234, ids.intern("Author 1234"), "Interning again should return the same id");
+        assertEquals("Author 9999", ids.stringOf(ids.idOf("Author 9999")));
+        assertEquals(-1, ids.idOf("Nobody"));
+        assertEquals(10_000, ids.size());
+    }
+}
@@ -0,0 +1,39 @@
+package workload;
+
+import java.util.HashMap;
+import java.util.List;
+import model.Book;
+import model.Library;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayHarnessTest {
+
+    @Test
+    void replayCountsEveryOperation() throws Exception {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        List<Book> catalog = generator.catalog(2000);
+        List<Operation> trace = generator.trace(catalog, 20_000, 50, OperationMix.parse("title=40,isbn=20,borrow=25,return=15"));
+
+        Library lib = new Library();
+        lib.loadSnapshot(catalog.toArray(new Book[0]), new HashMap<>());
+        ReplayHarness.Result result = new ReplayHarness(4).replay(lib, trace);
+
+        assertEquals(20_000, result.getOperations());
+        assertEquals(0, result.getFailed());
+        assertTrue(result.getRejected() < result.getOperations() / 2, "Most generated operations should succeed");
+        assertTrue(result.percentile(50) <= result.percentile(99));
+        assertTrue(result.percentile(99) <= result.percentile(99.9));
+        assertEquals(0, result.percentile(Operation.Type.SEARCH_AUTHOR, 50), "The mix had no author searches");
+    }
+
+    @Test
+    void operationsRoundTripThroughTraceLines() {
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        List<Operation> trace = generator.trace(generator.catalog(100), 500, 5, OperationMix.defaults());
+        for (Operation operation : trace) {
+            assertEquals(operation.toLine(), Operation.parse(operation.toLine()).toLine());
+        }
+    }
+}